@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet;
+
+import nl.talsmasoftware.umldoclet.testing.SyntheticSourceTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.tools.DocumentationTool;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+
+/**
+ * End-to-end benchmark running the {@link UMLDoclet} through the {@link DocumentationTool}
+ * on a {@link SyntheticSourceTree generated source tree}, including the standard doclet output.
+ *
+ * @author Sjoerd Talsma
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UMLDocletBenchmark {
+
+    @Param({"5"})
+    public int packages;
+
+    @Param({"20"})
+    public int classesPerPackage;
+
+    /**
+     * Value for the {@code -umlImageThreads} option, {@code 0} generates the images while rendering.
+     */
+    @Param({"1"})
+    public String imageThreads;
+
+    /**
+     * Value for the {@code -umlImageFormats} option, {@code none} measures a text-only run that never loads PlantUML.
+     */
+    @Param({"svg,png", "none"})
+    public String imageFormats;
+
+    private Path sourceDir;
+    private Path outputDir;
+    private List<Path> sourceFiles;
+
+    @Setup
+    public void generateSources() throws IOException {
+        sourceDir = Files.createTempDirectory("umldoclet-benchmark-src-");
+        outputDir = Files.createTempDirectory("umldoclet-benchmark-out-");
+        sourceFiles = new SyntheticSourceTree().packages(packages).classesPerPackage(classesPerPackage).writeTo(sourceDir);
+    }
+
+    @TearDown
+    public void deleteFiles() throws IOException {
+        for (Path dir : asList(sourceDir, outputDir)) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean runDoclet() throws IOException {
+        DocumentationTool javadoc = ToolProvider.getSystemDocumentationTool();
+        try (StandardJavaFileManager fileManager = javadoc.getStandardFileManager(null, null, UTF_8)) {
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromPaths(sourceFiles);
+            List<String> options = asList("-quiet", "-d", outputDir.toString(),
+                    "-umlImageThreads", imageThreads, "-umlImageFormats", imageFormats);
+            return javadoc.getTask(null, fileManager, null, UMLDoclet.class, options, units).call();
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.indent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks changing the {@link Indentation} level, which happens for every nested UML part that is rendered.
+ *
+ * @author Sjoerd Talsma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IndentationBenchmark {
+
+    private Indentation indentation = Indentation.DEFAULT;
+
+    @Benchmark
+    public Indentation increaseAndDecrease() {
+        return indentation.increase().increase().increase().decrease().decrease().decrease();
+    }
+
+    @Benchmark
+    public String deepIndentationAsString() {
+        Indentation deep = indentation;
+        for (int i = 0; i < 8; i++) deep = deep.increase();
+        return deep.toString();
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.indent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the throughput of the {@link IndentingWriter} and {@link IndentingPrintWriter}
+ * on diagram-like text with many short, indented lines.
+ *
+ * @author Sjoerd Talsma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IndentingWriterBenchmark {
+
+    @Param({"100", "10000"})
+    public int lines;
+
+    private String text;
+
+    @Setup
+    public void createText() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            builder.append("+method").append(i).append("(String, int): java.util.List<String>\n");
+        }
+        text = builder.toString();
+    }
+
+    @Benchmark
+    public StringBuilder indentingWriterToStringBuilder() throws IOException {
+        StringBuilder output = new StringBuilder(text.length() * 2);
+        IndentingWriter.wrap(output, Indentation.DEFAULT).indent().indent().write(text);
+        return output;
+    }
+
+    @Benchmark
+    public StringWriter indentingWriterToWriter() throws IOException {
+        StringWriter output = new StringWriter(text.length() * 2);
+        IndentingWriter.wrap(output, Indentation.DEFAULT).indent().indent().write(text);
+        return output;
+    }
+
+    @Benchmark
+    public StringBuilder indentingPrintWriterLines() {
+        StringBuilder output = new StringBuilder(text.length() * 2);
+        IndentingPrintWriter writer = IndentingPrintWriter.wrap(output, Indentation.DEFAULT).indent().indent();
+        for (int i = 0; i < lines; i++) {
+            writer.append("+method").append(Integer.toString(i)).append("(String, int):").whitespace()
+                    .append("java.util.List<String>").newline();
+        }
+        return output;
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.indent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link IndentingWriter} with the {@link PerCharacterIndentingWriter per-character baseline}
+ * on a real diagram: {@code example/indent-package.puml}, indented one level as when it is nested in a namespace.
+ * <p>
+ * The benchmarks must be run from the project directory.
+ *
+ * @author Sjoerd Talsma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IndentingWriterComparisonBenchmark {
+
+    private String diagram;
+    private Indentation indentation;
+
+    @Setup
+    public void readDiagram() throws IOException {
+        diagram = new String(Files.readAllBytes(Paths.get("example/indent-package.puml")), StandardCharsets.UTF_8);
+        indentation = Indentation.DEFAULT.increase();
+    }
+
+    @Benchmark
+    public StringWriter perCharacterBaseline() throws IOException {
+        StringWriter output = new StringWriter(diagram.length() * 2);
+        new PerCharacterIndentingWriter(output, indentation).write(diagram);
+        return output;
+    }
+
+    @Benchmark
+    public StringWriter indentingWriter() throws IOException {
+        StringWriter output = new StringWriter(diagram.length() * 2);
+        IndentingWriter.wrap(output, indentation).write(diagram);
+        return output;
+    }
+
+    @Benchmark
+    public StringBuilder perCharacterBaselineToStringBuilder() throws IOException {
+        StringBuilder output = new StringBuilder(diagram.length() * 2);
+        new PerCharacterIndentingWriter(output, indentation).write(diagram);
+        return output;
+    }
+
+    @Benchmark
+    public StringBuilder indentingWriterToStringBuilder() throws IOException {
+        StringBuilder output = new StringBuilder(diagram.length() * 2);
+        IndentingWriter.wrap(output, indentation).write(diagram);
+        return output;
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.indent;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Baseline for the {@link IndentingWriter}: the indentation algorithm as it was before indentation-free spans
+ * were written in bulk, appending every character to the delegate separately.
+ * <p>
+ * Whitespace handling is left out because the compared text does not use it.
+ *
+ * @author Sjoerd Talsma
+ */
+final class PerCharacterIndentingWriter extends Writer {
+
+    private final Appendable delegate;
+    private final Indentation indentation;
+    private char lastWritten = '\n';
+
+    PerCharacterIndentingWriter(Appendable delegate, Indentation indentation) {
+        this.delegate = requireNonNull(delegate, "Delegate writer is required.");
+        this.indentation = requireNonNull(indentation, "Indentation is required.");
+    }
+
+    private static boolean isEol(char ch) {
+        return ch == '\r' || ch == '\n';
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        synchronized (lock) {
+            for (int i = 0; i < len; i++) {
+                char ch = cbuf[off + i];
+                if (isEol(lastWritten) && !isEol(ch)) delegate.append(indentation);
+                delegate.append(ch);
+                lastWritten = ch;
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.plantuml;
+
+import nl.talsmasoftware.umldoclet.logging.Logger;
+import nl.talsmasoftware.umldoclet.logging.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks generating an image from a class diagram with the {@link PlantumlImageRenderer}, per image format.
+ * <p>
+ * Images are generated synchronously and without image cache, so every invocation renders the image.
+ *
+ * @author Sjoerd Talsma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PlantumlImageRendererBenchmark {
+    private static final Logger NO_LOGGING = new Logger() {
+        public void debug(Message key, Object... args) {
+        }
+
+        public void info(Message key, Object... args) {
+        }
+
+        public void warn(Message key, Object... args) {
+        }
+
+        public void error(Message key, Object... args) {
+        }
+    };
+
+    @Param({"svg", "png"})
+    public String format;
+
+    @Param({"10"})
+    public int classes;
+
+    private String uml;
+    private File directory;
+
+    @Setup
+    public void createDiagram() throws IOException {
+        directory = Files.createTempDirectory("umldoclet-benchmark-").toFile();
+        StringBuilder builder = new StringBuilder("@startuml\n\nnamespace benchmark {\n");
+        for (int i = 0; i < classes; i++) {
+            builder.append("    class Class").append(i).append(" {\n")
+                    .append("        -value: String\n")
+                    .append("        +getValue(): String\n")
+                    .append("    }\n");
+            if (i > 0) builder.append("    Class").append(i).append(" --> Class").append(i - 1).append('\n');
+        }
+        uml = builder.append("}\n\n@enduml\n").toString();
+    }
+
+    @TearDown
+    public void deleteImages() {
+        Stream.of(directory.listFiles()).forEach(File::delete);
+        directory.delete();
+    }
+
+    @Benchmark
+    public File renderImage() throws IOException {
+        new PlantumlImageRenderer(NO_LOGGING, null, null, directory, "diagram", format).render(uml);
+        return new File(directory, "diagram." + format);
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.uml;
+
+import nl.talsmasoftware.umldoclet.UMLDoclet;
+import nl.talsmasoftware.umldoclet.javadoc.DocletConfig;
+import nl.talsmasoftware.umldoclet.rendering.indent.IndentingPrintWriter;
+import nl.talsmasoftware.umldoclet.uml.configuration.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link UMLPart#writeTo(IndentingPrintWriter) rendering} a large synthetic diagram
+ * of namespaces containing types with fields and methods.
+ *
+ * @author Sjoerd Talsma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UMLPartBenchmark {
+    private static final TypeName STRING = new TypeName("String", "java.lang.String");
+    private static final TypeName LIST_OF_STRING = new TypeName("List", "java.util.List", STRING);
+
+    @Param({"10"})
+    public int namespaces;
+
+    @Param({"10", "100"})
+    public int typesPerNamespace;
+
+    @Param({"10"})
+    public int membersPerType;
+
+    private UMLDiagram diagram;
+
+    @Setup
+    public void createDiagram() {
+        diagram = new SyntheticDiagram(new DocletConfig(new UMLDoclet()));
+        for (int n = 0; n < namespaces; n++) {
+            Namespace namespace = new Namespace(diagram, "benchmark.package" + n);
+            diagram.children.add(namespace);
+            for (int t = 0; t < typesPerNamespace; t++) {
+                Type type = new Type(namespace, Type.Classification.CLASS,
+                        new TypeName("Type" + t, namespace.name + ".Type" + t));
+                addChild(namespace, type);
+                for (int m = 0; m < membersPerType; m++) {
+                    type.children.add(new Field(type, Visibility.PRIVATE, false, "field" + m, STRING));
+                    type.children.add(new Method(type, Visibility.PUBLIC, false, false, "method" + m,
+                            new Parameters().add("first", STRING).add("second", LIST_OF_STRING), LIST_OF_STRING));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addChild(UMLPart parent, UMLPart child) {
+        ((Collection<UMLPart>) parent.getChildren()).add(child);
+    }
+
+    @Benchmark
+    public StringBuilder writeDiagram() {
+        StringBuilder output = new StringBuilder();
+        diagram.writeTo(IndentingPrintWriter.wrap(output, diagram.getConfiguration().getIndentation()));
+        return output;
+    }
+
+    @Benchmark
+    public String diagramToString() {
+        return diagram.toString();
+    }
+
+    private static final class SyntheticDiagram extends UMLDiagram {
+        private SyntheticDiagram(Configuration config) {
+            super(config);
+        }
+
+        @Override
+        protected File pumlFile() {
+            return new File("target/benchmark/synthetic.puml");
+        }
+    }
+
+}
@@ -18,9 +18,9 @@ package nl.talsmasoftware.umldoclet;
 import jdk.javadoc.doclet.DocletEnvironment;
 import jdk.javadoc.doclet.Reporter;
 import jdk.javadoc.doclet.StandardDoclet;
-import net.sourceforge.plantuml.version.Version;
 import nl.talsmasoftware.umldoclet.javadoc.DocletConfig;
 import nl.talsmasoftware.umldoclet.javadoc.UMLFactory;
+import nl.talsmasoftware.umldoclet.rendering.ImageRendererFactory;
 import nl.talsmasoftware.umldoclet.uml.UMLDiagram;
 
 import javax.lang.model.SourceVersion;
@@ -30,6 +30,14 @@ import javax.lang.model.element.TypeElement;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 import static nl.talsmasoftware.umldoclet.logging.Message.*;
 
@@ -74,9 +82,21 @@ public class UMLDoclet extends StandardDoclet {
     public boolean run(DocletEnvironment docEnv) {
         try {
             config.getLogger().info(DOCLET_COPYRIGHT, DOCLET_VERSION);
-            config.getLogger().info(PLANTUML_COPYRIGHT, Version.versionString());
-
-            return generateUMLDiagrams(docEnv) && super.run(docEnv);
+            // PlantUML is only loaded when images are generated.
+            ImageRendererFactory imageRenderers = config.getImageRendererFactory();
+            if (imageRenderers != null) config.getLogger().info(PLANTUML_COPYRIGHT, imageRenderers.libraryVersion());
+
+            // Images may still be generated in the background while the standard doclet runs.
+            boolean result = false;
+            try {
+                result = generateUMLDiagrams(docEnv) && super.run(docEnv);
+            } finally {
+                // Queued images must not be lost when the JVM exits, not even after an unexpected error.
+                result = config.awaitImageRendering() && result;
+            }
+            result = config.writeDeferredImages() && result;
+            config.reportMetrics();
+            return result;
 
         } catch (RuntimeException rte) {
             config.getLogger().error(ERROR_UNANTICIPATED_ERROR_GENERATING_UML, rte);
@@ -87,11 +107,71 @@ public class UMLDoclet extends StandardDoclet {
 
     private boolean generateUMLDiagrams(DocletEnvironment docEnv) {
         UMLFactory factory = new UMLFactory(config, docEnv);
-        return docEnv.getIncludedElements().stream()
+        // The diagram models are always created sequentially; the javadoc element model is not thread-safe.
+        Stream<UMLDiagram> diagrams = docEnv.getIncludedElements().stream()
                 .map(element -> mapToDiagram(factory, element))
-                .filter(Optional::isPresent).map(Optional::get)
-                .map(UMLDiagram::render)
-                .reduce(Boolean.TRUE, (a, b) -> a & b);
+                .filter(Optional::isPresent).map(Optional::get);
+        boolean result = config.getThreads() > 1
+                ? renderConcurrently(diagrams, config.getThreads())
+                : diagrams.map(UMLDiagram::render).reduce(Boolean.TRUE, (a, b) -> a & b);
+        // The package dependencies were indexed while the other diagrams were created.
+        result = factory.createPackageDependencyDiagram().map(UMLDiagram::render).orElse(Boolean.TRUE) && result;
+        factory.reportCacheStatistics();
+        return result;
+    }
+
+    /**
+     * Renders the diagrams using a pool of {@code threads} worker threads.
+     * <p>
+     * Every diagram renders to its own file, so the output is identical to sequential rendering.
+     * Creating new diagrams blocks while {@code 2 * threads} diagrams are waiting to be rendered,
+     * so the number of diagram models in memory does not grow with the size of the project.
+     *
+     * @param diagrams The diagrams to be rendered.
+     * @param threads  The number of rendering threads to use.
+     * @return Whether all diagrams were rendered successfully.
+     * @throws IllegalStateException if rendering a diagram failed unexpectedly;
+     *                               thrown after all other diagrams have been rendered.
+     */
+    private static boolean renderConcurrently(Stream<UMLDiagram> diagrams, int threads) {
+        final AtomicInteger threadCount = new AtomicInteger(0);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "umldoclet-render-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final Semaphore pending = new Semaphore(2 * threads);
+        final AtomicBoolean result = new AtomicBoolean(true);
+        final AtomicReference<Throwable> unexpected = new AtomicReference<>();
+        try {
+            diagrams.forEach(diagram -> {
+                pending.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        if (!diagram.render()) result.set(false);
+                    } catch (RuntimeException | Error e) {
+                        result.set(false);
+                        if (!unexpected.compareAndSet(null, e)) unexpected.get().addSuppressed(e);
+                    } finally {
+                        pending.release();
+                    }
+                });
+            });
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // keep waiting, rendering is still in progress
+            }
+            final Throwable cause = unexpected.get();
+            if (cause != null) {
+                throw new IllegalStateException("Unexpected error rendering UML diagram: " + cause, cause);
+            }
+            return result.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     private Optional<UMLDiagram> mapToDiagram(UMLFactory factory, Element element) {
@@ -45,14 +45,15 @@ class ClassDiagram extends UMLDiagram {
         if (pumlFile == null) {
             StringBuilder result = new StringBuilder(getConfiguration().getDestinationDirectory());
             if (result.length() > 0 && result.charAt(result.length() - 1) != '/') result.append('/');
-            String containingPackage = type.getNamespace().name;
+            Namespace namespace = type.getNamespace();
+            String containingPackage = namespace.name;
             result.append(containingPackage.replace('.', '/')).append('/');
-            if (type.name.qualified.startsWith(containingPackage + ".")) {
+            if (namespace.contains(type.name)) {
                 result.append(type.name.qualified.substring(containingPackage.length() + 1));
             } else {
                 result.append(type.name.simple);
             }
-            pumlFile = ensureParentDir(new File(result.append(".puml").toString()));
+            pumlFile = new File(result.append(".puml").toString());
         }
         return pumlFile;
     }
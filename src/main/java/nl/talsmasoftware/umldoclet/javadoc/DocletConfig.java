@@ -19,23 +19,54 @@ import jdk.javadoc.doclet.Doclet;
 import jdk.javadoc.doclet.Reporter;
 import nl.talsmasoftware.umldoclet.UMLDoclet;
 import nl.talsmasoftware.umldoclet.logging.Logger;
+import nl.talsmasoftware.umldoclet.metrics.DiagramMetrics;
+import nl.talsmasoftware.umldoclet.metrics.Metrics;
+import nl.talsmasoftware.umldoclet.rendering.ImageRendererFactory;
+import nl.talsmasoftware.umldoclet.rendering.writers.AtomicFileWriter;
 import nl.talsmasoftware.umldoclet.rendering.indent.Indentation;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.DaemonClient;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.DeferredImages;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.ImageCache;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.ImageRenderingQueue;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.PlantumlImageRendererFactory;
 import nl.talsmasoftware.umldoclet.uml.Visibility;
 import nl.talsmasoftware.umldoclet.uml.configuration.Configuration;
 import nl.talsmasoftware.umldoclet.uml.configuration.FieldConfig;
 import nl.talsmasoftware.umldoclet.uml.configuration.MethodConfig;
 import nl.talsmasoftware.umldoclet.uml.configuration.TypeDisplay;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 import static java.util.Arrays.asList;
 import static java.util.Objects.requireNonNull;
+import static nl.talsmasoftware.umldoclet.logging.Message.DEBUG_METRICS_SUMMARY;
+import static nl.talsmasoftware.umldoclet.logging.Message.DEBUG_RUNTIME_FOOTPRINT;
+import static nl.talsmasoftware.umldoclet.logging.Message.ERROR_COULDNT_WRITE_DEFERRED_IMAGES;
+import static nl.talsmasoftware.umldoclet.logging.Message.INFO_GENERATING_FILE;
+import static nl.talsmasoftware.umldoclet.logging.Message.INFO_SLOWEST_DIAGRAMS;
+import static nl.talsmasoftware.umldoclet.logging.Message.WARNING_COULDNT_WRITE_METRICS;
 
 public class DocletConfig implements Configuration {
 
     private final Doclet doclet;
     private final UMLOptions options;
     private volatile LocalizedReporter reporter;
+    private ImageRenderingQueue imageRenderingQueue;
+    private ImageCache imageCache;
+    private ImageRendererFactory imageRendererFactory;
+    private DeferredImages deferredImages;
+    private DaemonClient daemonClient;
+    private final Metrics metrics = new Metrics();
 
     /**
      * Destination directory where documentation is generated.
@@ -44,6 +75,13 @@ public class DocletConfig implements Configuration {
      */
     String destDirName = "";
 
+    /**
+     * Character encoding of the generated documentation.
+     * <p>
+     * Set by (Standard) doclet option {@code -docencoding}, default is {@code null}.
+     */
+    String docEncoding = null;
+
     /**
      * Whether the doclet should run more quite (errors must still be displayed).
      * <p>
@@ -58,12 +96,129 @@ public class DocletConfig implements Configuration {
      */
     boolean verbose = false;
 
+    /**
+     * Character encoding of the generated UML files.
+     * <p>
+     * Set by (our own) doclet option {@code -umlEncoding}, defaults to the {@code -docencoding} or {@code UTF-8}.
+     */
+    String umlEncoding = null;
+
+    /**
+     * The number of threads to render the UML diagrams with.
+     * <p>
+     * Set by (our own) doclet option {@code -umlThreads}, default is {@code 1} meaning sequential rendering.
+     */
+    int threads = 1;
+
+    /**
+     * The number of threads to generate images with, asynchronously from writing the UML diagrams.
+     * <p>
+     * Set by (our own) doclet option {@code -umlImageThreads}, default is {@code 0}
+     * meaning images are generated synchronously while rendering each diagram.
+     */
+    int imageThreads = 0;
+
+    /**
+     * The image formats to generate for each diagram.
+     * <p>
+     * Set by (our own) doclet option {@code -umlImageFormats}, default is {@code svg,png}.
+     * The value {@code none} means no images are generated.
+     */
+    List<String> imageFormats = new ArrayList<>(asList("svg", "png"));
+
+    /**
+     * The image formats that are not generated while running javadoc,
+     * but listed in a manifest to be generated later by the {@code PlantumlBatchRenderer}.
+     * Deferred formats are left out of the {@link #getImageFormats() image formats} generated while running javadoc.
+     * <p>
+     * Set by (our own) doclet option {@code -umlDeferredImageFormats}, default is {@code none}.
+     */
+    List<String> deferredImageFormats = new ArrayList<>();
+
+    /**
+     * Whether images should be generated by a local rendering daemon, starting it if it is not yet running.
+     * <p>
+     * Set by (our own) doclet option {@code -umlDaemon}, default is {@code false}.
+     * Images are generated in-process as long as the daemon is not available.
+     */
+    boolean daemon = false;
+
+    /**
+     * Whether unchanged diagrams and their images should be left untouched.
+     * <p>
+     * Set by (our own) doclet option {@code -umlIncremental}, default is {@code false}.
+     */
+    boolean incremental = false;
+
+    /**
+     * Whether diagram models should be released as soon as they are rendered.
+     * <p>
+     * Set by (our own) doclet option {@code -umlStreaming}, default is {@code false}.
+     */
+    boolean streaming = false;
+
+    /**
+     * Whether an overview diagram of the dependencies between the documented packages should be generated.
+     * <p>
+     * Set by (our own) doclet option {@code -umlPackageDependencies}, default is {@code false}.
+     */
+    boolean packageDependencies = false;
+
+    /**
+     * Directory to cache rendered images in, shared between javadoc runs.
+     * <p>
+     * Set by (our own) doclet option {@code -umlCacheDir}, default is {@code null} meaning no image cache.
+     */
+    String cacheDirName = null;
+
+    /**
+     * The maximum size of the image cache in megabytes.
+     * <p>
+     * Set by (our own) doclet option {@code -umlCacheSize}, default is {@code 256}.
+     */
+    int cacheSizeMB = 256;
+
+    /**
+     * File to write the timing and size metrics of the run to, in JSON format.
+     * <p>
+     * Set by (our own) doclet option {@code -umlMetricsFile}, default is {@code null} meaning no metrics file.
+     */
+    String metricsFileName = null;
+
+    /**
+     * The maximum number of seconds to generate the images of a single diagram.
+     * <p>
+     * Set by (our own) doclet option {@code -umlRenderTimeout}, default is {@code 0} meaning no time limit.
+     */
+    int renderTimeoutSeconds = 0;
+
+    /**
+     * The number of slowest diagrams to report at the end of the run.
+     * <p>
+     * Set by (our own) doclet option {@code -umlSlowestDiagrams}, default is {@code 0} meaning no slow-diagram report.
+     */
+    int slowestDiagrams = 0;
+
     FieldCfg fieldConfig = new FieldCfg();
     MethodCfg methodConfig = new MethodCfg();
 
     List<String> excludedReferences = new ArrayList<>(asList(
             "java.lang.Object", "java.lang.Enum", "java.lang.annotation.Annotation"));
 
+    /**
+     * Packages of which frequently referenced types are left out of package diagrams.
+     * <p>
+     * Set by (our own) doclet option {@code -umlPrunedPackages}, default is {@code java.lang,java.util}.
+     */
+    List<String> prunedPackages = new ArrayList<>(asList("java.lang", "java.util"));
+
+    /**
+     * The number of references to a type from a pruned package that is allowed in a package diagram.
+     * <p>
+     * Set by (our own) doclet option {@code -umlPruneThreshold}, default is {@code 2}.
+     */
+    int pruneThreshold = 2;
+
     // TODO decide whether we want to make this configurable at all.
     private Indentation indentation = Indentation.DEFAULT;
 
@@ -93,6 +248,200 @@ public class DocletConfig implements Configuration {
         return destDirName;
     }
 
+    @Override
+    public Charset getUmlCharset() {
+        return umlEncoding != null ? Charset.forName(umlEncoding)
+                : docEncoding != null ? Charset.forName(docEncoding)
+                : StandardCharsets.UTF_8;
+    }
+
+    /**
+     * @return The number of threads to render the diagrams with, at least {@code 1}.
+     */
+    public int getThreads() {
+        return Math.max(1, threads);
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    @Override
+    public boolean isPackageDependencies() {
+        return packageDependencies;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * These are the configured {@code -umlImageFormats} without the {@code -umlDeferredImageFormats}.
+     */
+    @Override
+    public List<String> getImageFormats() {
+        if (deferredImageFormats.isEmpty()) return imageFormats;
+        List<String> inProcess = new ArrayList<>(imageFormats);
+        inProcess.removeAll(deferredImageFormats);
+        return inProcess;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The PlantUML library is only loaded by the first call that returns a factory.
+     */
+    @Override
+    public synchronized ImageRendererFactory getImageRendererFactory() {
+        if (imageRendererFactory == null && !getImageFormats().isEmpty()) {
+            imageRendererFactory = new PlantumlImageRendererFactory(getLogger(), getImageExecutor(), getImageCache(),
+                    getDaemonClient(), getRenderTimeout(), getImageFormats());
+        }
+        return imageRendererFactory;
+    }
+
+    @Override
+    public synchronized DeferredImages getDeferredImages() {
+        if (deferredImages == null && !deferredImageFormats.isEmpty()) {
+            File manifest = destDirName.isEmpty() ? new File(DeferredImages.MANIFEST_NAME)
+                    : new File(destDirName, DeferredImages.MANIFEST_NAME);
+            deferredImages = new DeferredImages(manifest, getUmlCharset(), deferredImageFormats);
+        }
+        return deferredImages;
+    }
+
+    /**
+     * Writes the manifest of deferred images, if any images were deferred.
+     *
+     * @return Whether the manifest was written successfully.
+     */
+    public boolean writeDeferredImages() {
+        final DeferredImages manifest;
+        synchronized (this) {
+            manifest = deferredImages;
+        }
+        if (manifest == null) return true;
+        try {
+            getLogger().info(INFO_GENERATING_FILE, manifest.getManifest());
+            manifest.write();
+            return true;
+        } catch (IOException | RuntimeException writeException) {
+            getLogger().error(ERROR_COULDNT_WRITE_DEFERRED_IMAGES, manifest.getManifest(), writeException);
+            return false;
+        }
+    }
+
+    /**
+     * @return The executor to generate images with asynchronously,
+     * or {@code null} if images should be generated synchronously.
+     */
+    public synchronized Executor getImageExecutor() {
+        if (imageRenderingQueue == null && imageThreads > 0) {
+            imageRenderingQueue = new ImageRenderingQueue(getLogger(), imageThreads);
+        }
+        return imageRenderingQueue;
+    }
+
+    /**
+     * @return The client of the local rendering daemon to delegate image generation to,
+     * or {@code null} if images should always be generated in-process.
+     */
+    public synchronized DaemonClient getDaemonClient() {
+        if (daemonClient == null && daemon) {
+            daemonClient = new DaemonClient(getLogger(), DaemonClient.defaultDaemonFile()).startIfNotRunning();
+        }
+        return daemonClient;
+    }
+
+    /**
+     * @return The cache of previously rendered images, or {@code null} if images should always be rendered.
+     */
+    public synchronized ImageCache getImageCache() {
+        if (imageCache == null && cacheDirName != null && !cacheDirName.isEmpty()) {
+            imageCache = new ImageCache(new File(cacheDirName), cacheSizeMB * 1024L * 1024L);
+        }
+        return imageCache;
+    }
+
+    /**
+     * Waits until all asynchronously generated images have been completed.
+     *
+     * @return Whether all images were generated successfully.
+     */
+    public boolean awaitImageRendering() {
+        final ImageRenderingQueue queue;
+        synchronized (this) {
+            queue = imageRenderingQueue;
+            imageRenderingQueue = null;
+        }
+        return queue == null || queue.awaitCompletion();
+    }
+
+    /**
+     * @return The maximum time to generate the images of a single diagram, or {@code null} for no time limit.
+     */
+    public Duration getRenderTimeout() {
+        return renderTimeoutSeconds > 0 ? Duration.ofSeconds(renderTimeoutSeconds) : null;
+    }
+
+    /**
+     * @return The timing and size measurements of the current run.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public DiagramMetrics getDiagramMetrics(String diagramName) {
+        return metrics.forDiagram(diagramName);
+    }
+
+    /**
+     * Reports the metrics of this run as a debug summary, followed by the slowest diagrams,
+     * and writes them to the metrics file if one was configured.
+     */
+    public void reportMetrics() {
+        getLogger().debug(DEBUG_METRICS_SUMMARY, metrics.summary());
+        if (verbose && !quiet) { // only inspect the loaded classes if the footprint is actually printed
+            getLogger().debug(DEBUG_RUNTIME_FOOTPRINT, ManagementFactory.getRuntimeMXBean().getUptime(),
+                    ManagementFactory.getClassLoadingMXBean().getLoadedClassCount(),
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024),
+                    isPlantumlLoaded());
+        }
+        if (slowestDiagrams > 0 && !metrics.getDiagrams().isEmpty()) {
+            getLogger().info(INFO_SLOWEST_DIAGRAMS, metrics.slowestDiagrams(slowestDiagrams));
+        }
+        if (metricsFileName != null && !metricsFileName.isEmpty()) {
+            try (Writer writer = new AtomicFileWriter(new File(metricsFileName), StandardCharsets.UTF_8)) {
+                metrics.writeJsonTo(writer);
+            } catch (IOException | RuntimeException writeException) {
+                getLogger().warn(WARNING_COULDNT_WRITE_METRICS, metricsFileName, writeException);
+            }
+        }
+    }
+
+    /**
+     * Determines whether any PlantUML class was loaded into the JVM, without loading one to find out.
+     * <p>
+     * The class hierarchy diagnostic command of the JVM lists all loaded classes.
+     *
+     * @return {@code "true"} or {@code "false"}, or {@code "?"} if the loaded classes cannot be inspected.
+     */
+    private static String isPlantumlLoaded() {
+        try {
+            Object loadedClasses = ManagementFactory.getPlatformMBeanServer().invoke(
+                    new ObjectName("com.sun.management:type=DiagnosticCommand"), "vmClassHierarchy",
+                    new Object[]{null}, new String[]{String[].class.getName()});
+            return Boolean.toString(String.valueOf(loadedClasses).contains("net.sourceforge.plantuml."));
+        } catch (JMException | RuntimeException cannotInspect) {
+            return "?";
+        }
+    }
+
     @Override
     public FieldConfig getFieldConfig() {
         return fieldConfig;
@@ -108,6 +457,16 @@ public class DocletConfig implements Configuration {
         return excludedReferences;
     }
 
+    @Override
+    public List<String> getPrunedPackages() {
+        return prunedPackages;
+    }
+
+    @Override
+    public int getPruneThreshold() {
+        return pruneThreshold;
+    }
+
     class FieldCfg implements FieldConfig {
 
         TypeDisplay typeDisplay = TypeDisplay.SIMPLE;
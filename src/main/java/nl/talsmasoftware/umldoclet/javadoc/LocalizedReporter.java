@@ -91,7 +91,9 @@ final class LocalizedReporter implements Reporter, Logger {
     public void print(Diagnostic.Kind kind, String msg) {
         if (mustPrint(kind)) {
             if (delegate == null) System.out.println(msg);
-            else delegate.print(kind, msg);
+            else synchronized (delegate) {
+                delegate.print(kind, msg);
+            }
         }
     }
 
@@ -99,7 +101,9 @@ final class LocalizedReporter implements Reporter, Logger {
     public void print(Diagnostic.Kind kind, DocTreePath path, String msg) {
         if (mustPrint(kind)) {
             if (delegate == null) System.out.println(msg);
-            else delegate.print(kind, path, msg);
+            else synchronized (delegate) {
+                delegate.print(kind, path, msg);
+            }
         }
     }
 
@@ -107,7 +111,9 @@ final class LocalizedReporter implements Reporter, Logger {
     public void print(Diagnostic.Kind kind, Element elem, String msg) {
         if (mustPrint(kind)) {
             if (delegate == null) System.out.println(msg);
-            else delegate.print(kind, elem, msg);
+            else synchronized (delegate) {
+                delegate.print(kind, elem, msg);
+            }
         }
     }
 }
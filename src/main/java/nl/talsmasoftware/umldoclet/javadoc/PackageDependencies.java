@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.javadoc;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Collections.emptySet;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Thread-safe index of the dependencies between packages during a single doclet run.
+ * <p>
+ * The index is filled incrementally while the types are modelled for the other diagrams,
+ * so the package dependencies of the whole project are known without visiting the javadoc elements again.
+ * Only dependencies between documented packages are reported;
+ * dependencies on other packages (e.g. {@code java.util}) are recorded but left out of the overview.
+ *
+ * @author Sjoerd Talsma
+ */
+final class PackageDependencies {
+
+    private final Set<String> documentedPackages = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<String>> dependencies = new ConcurrentHashMap<>();
+
+    /**
+     * Marks the package as documented, making it part of the package dependency overview.
+     *
+     * @param packageName The qualified name of the documented package.
+     */
+    void addDocumentedPackage(String packageName) {
+        documentedPackages.add(requireNonNull(packageName, "Package name is <null>."));
+    }
+
+    /**
+     * Records that the {@code fromPackage} depends on the {@code toPackage}.
+     * References within the same package are ignored.
+     *
+     * @param fromPackage The qualified name of the package containing the dependent type.
+     * @param toPackage   The qualified name of the package containing the referenced type.
+     */
+    void addDependency(String fromPackage, String toPackage) {
+        requireNonNull(fromPackage, "Dependent package is <null>.");
+        requireNonNull(toPackage, "Referenced package is <null>.");
+        if (!fromPackage.equals(toPackage)) {
+            dependencies.computeIfAbsent(fromPackage, pkg -> ConcurrentHashMap.newKeySet()).add(toPackage);
+        }
+    }
+
+    /**
+     * @return Whether no packages were documented (yet).
+     */
+    boolean isEmpty() {
+        return documentedPackages.isEmpty();
+    }
+
+    /**
+     * The dependencies between the documented packages, sorted by name.
+     * <p>
+     * Every documented package is a key in the result, also if it has no dependencies on other documented packages.
+     *
+     * @return The documented packages, each with the documented packages it depends on.
+     */
+    SortedMap<String, SortedSet<String>> getDocumentedDependencies() {
+        SortedMap<String, SortedSet<String>> result = new TreeMap<>();
+        for (String packageName : documentedPackages) {
+            SortedSet<String> documentedDependencies = new TreeSet<>(dependencies.getOrDefault(packageName, emptySet()));
+            documentedDependencies.retainAll(documentedPackages);
+            result.put(packageName, documentedDependencies);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{packages=" + documentedPackages.size() + ", dependencies=" + dependencies.size() + '}';
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.javadoc;
+
+import nl.talsmasoftware.umldoclet.rendering.indent.IndentingPrintWriter;
+import nl.talsmasoftware.umldoclet.uml.Reference;
+import nl.talsmasoftware.umldoclet.uml.UMLDiagram;
+import nl.talsmasoftware.umldoclet.uml.UMLPart;
+import nl.talsmasoftware.umldoclet.uml.configuration.Configuration;
+
+import java.io.File;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import static java.util.Objects.requireNonNull;
+import static nl.talsmasoftware.umldoclet.uml.Reference.Side.from;
+import static nl.talsmasoftware.umldoclet.uml.Reference.Side.to;
+
+/**
+ * Overview of the dependencies between all documented packages of the project.
+ * <p>
+ * The diagram is created from the {@link PackageDependencies package dependency index}
+ * after all other diagrams were modelled, so it does not need its own pass over the javadoc elements.
+ *
+ * @author Sjoerd Talsma
+ */
+class PackageDependencyDiagram extends UMLDiagram {
+
+    static final String FILE_NAME = "package-dependencies.puml";
+
+    private File pumlFile = null;
+
+    PackageDependencyDiagram(Configuration config, PackageDependencies packageDependencies) {
+        super(config);
+        SortedMap<String, SortedSet<String>> dependencies = packageDependencies.getDocumentedDependencies();
+        children.add(new Statement(this, "set namespaceSeparator none"));
+        children.add(UMLPart.NEWLINE);
+        dependencies.keySet().forEach(packageName -> children.add(new Statement(this, "package " + packageName + " {}")));
+        children.add(UMLPart.NEWLINE);
+        dependencies.forEach((packageName, dependsOn) -> dependsOn.forEach(dependency ->
+                children.add(new Reference(from(packageName), "..>", to(dependency)))));
+    }
+
+    @Override
+    protected File pumlFile() {
+        if (pumlFile == null) {
+            String destination = getConfiguration().getDestinationDirectory();
+            pumlFile = new File(destination.isEmpty() ? "." : destination, FILE_NAME);
+        }
+        return pumlFile;
+    }
+
+    /**
+     * Single line of plantuml text in the diagram.
+     */
+    private static final class Statement extends UMLPart {
+        private final String text;
+
+        private Statement(UMLPart parent, String text) {
+            super(parent);
+            this.text = requireNonNull(text, "Statement text is <null>.");
+        }
+
+        @Override
+        public <IPW extends IndentingPrintWriter> IPW writeTo(IPW output) {
+            output.append(text).newline();
+            return output;
+        }
+    }
+
+}
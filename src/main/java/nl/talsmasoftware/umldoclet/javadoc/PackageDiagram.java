@@ -22,6 +22,8 @@ import java.io.File;
 import java.util.*;
 import java.util.stream.Stream;
 
+import static java.util.Collections.emptyList;
+
 /**
  * @author Sjoerd Talsma
  */
@@ -35,24 +37,11 @@ class PackageDiagram extends UMLDiagram {
         super(factory.config);
         factory.diagram.set(this);
         Map<Namespace, Collection<Type>> foreignTypes = new LinkedHashMap<>();
-        List<Reference> references = new ArrayList<>();
+        References references = new References();
         packageName = packageElement.getQualifiedName().toString();
         children.add(factory.createPackage(this, packageElement, foreignTypes, references));
 
-        // TODO: Should we filter "java.lang" or "java.util" references that occur >= 3 times?
-        // Maybe somehow make this configurable as well.
-        foreignTypes.entrySet().stream()
-                .filter(entry -> "java.lang".equals(entry.getKey().name) || "java.util".equals(entry.getKey().name))
-                .map(Map.Entry::getValue)
-                .forEach(types -> {
-                    for (Iterator<Type> it = types.iterator(); it.hasNext(); ) {
-                        Type type = it.next();
-                        if (references.stream().filter(ref -> ref.contains(type.name)).limit(3).count() > 2) {
-                            references.removeIf(ref -> ref.contains(type.name));
-                            it.remove();
-                        }
-                    }
-                });
+        pruneFrequentlyReferencedTypes(foreignTypes, references);
 
         foreignTypes.entrySet().stream()
                 .filter(entry -> !entry.getValue().isEmpty())
@@ -68,6 +57,46 @@ class PackageDiagram extends UMLDiagram {
         references.stream().map(Reference::canonical).forEach(children::add);
     }
 
+    /**
+     * Removes types from the {@link nl.talsmasoftware.umldoclet.uml.configuration.Configuration#getPrunedPackages()
+     * pruned packages} that are referenced more often than the configured threshold, together with their references.
+     * <p>
+     * The references are indexed by type once, so pruning takes linear time in the number of references.
+     * Types are considered in order; references that were already pruned no longer count for the next types.
+     *
+     * @param foreignTypes The foreign types by namespace.
+     * @param references   The references in this package diagram.
+     */
+    private void pruneFrequentlyReferencedTypes(Map<Namespace, Collection<Type>> foreignTypes, References references) {
+        final Collection<String> prunedPackages = new HashSet<>(getConfiguration().getPrunedPackages());
+        final int threshold = getConfiguration().getPruneThreshold();
+        final Set<Reference> pruned = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<String, List<Reference>> referencesByType = null;
+        for (Map.Entry<Namespace, Collection<Type>> entry : foreignTypes.entrySet()) {
+            if (!prunedPackages.contains(entry.getKey().name)) continue;
+            if (referencesByType == null) referencesByType = indexByType(references);
+            for (Iterator<Type> it = entry.getValue().iterator(); it.hasNext(); ) {
+                List<Reference> typeReferences = referencesByType.getOrDefault(it.next().name.qualified, emptyList());
+                if (typeReferences.stream().filter(ref -> !pruned.contains(ref)).count() > threshold) {
+                    pruned.addAll(typeReferences);
+                    it.remove();
+                }
+            }
+        }
+        if (!pruned.isEmpty()) references.removeIf(pruned::contains);
+    }
+
+    private static Map<String, List<Reference>> indexByType(Collection<Reference> references) {
+        final Map<String, List<Reference>> index = new HashMap<>();
+        for (Reference reference : references) {
+            index.computeIfAbsent(reference.from.qualifiedName, name -> new ArrayList<>()).add(reference);
+            if (!reference.isSelfReference()) {
+                index.computeIfAbsent(reference.to.qualifiedName, name -> new ArrayList<>()).add(reference);
+            }
+        }
+        return index;
+    }
+
     @Override
     protected File pumlFile() {
         if (pumlFile == null) {
@@ -75,7 +104,7 @@ class PackageDiagram extends UMLDiagram {
             if (result.length() > 0 && result.charAt(result.length() - 1) != '/') result.append('/');
             result.append(packageName.replace('.', '/'));
             result.append("/package.puml");
-            pumlFile = ensureParentDir(new File(result.toString()));
+            pumlFile = new File(result.toString());
         }
         return pumlFile;
     }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.javadoc;
+
+import nl.talsmasoftware.umldoclet.uml.Namespace;
+import nl.talsmasoftware.umldoclet.uml.Type;
+import nl.talsmasoftware.umldoclet.uml.TypeMember;
+import nl.talsmasoftware.umldoclet.uml.TypeName;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The diagram-independent model of a single type, built only once per doclet run.
+ * <p>
+ * UML parts are bound to the diagram they are rendered in, so the model cannot be shared as-is.
+ * Instead it contains everything that was derived from the javadoc elements, and every
+ * {@link #createType(Namespace) created Type} is a new projection of it that may be freely modified,
+ * e.g. by replacing fields with references in package diagrams.
+ *
+ * @author Sjoerd Talsma
+ */
+final class TypeModel {
+
+    private final Type.Classification classification;
+    private final TypeName name;
+    private final List<Function<Type, ? extends TypeMember>> members;
+
+    TypeModel(Type.Classification classification, TypeName name, List<Function<Type, ? extends TypeMember>> members) {
+        this.classification = requireNonNull(classification, "Type classification is <null>.");
+        this.name = requireNonNull(name, "Type name is <null>.");
+        this.members = requireNonNull(members, "Type members are <null>.");
+    }
+
+    /**
+     * Creates a new {@link Type} from this model in the specified namespace, including all its members.
+     *
+     * @param namespace The namespace (of a specific diagram) to contain the type.
+     * @return The new type.
+     */
+    Type createType(Namespace namespace) {
+        Type type = new Type(namespace, classification, name);
+        members.forEach(member -> UMLFactory.addChild(type, member.apply(type)));
+        return type;
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.javadoc;
+
+import nl.talsmasoftware.umldoclet.uml.TypeName;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Types;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Thread-safe cache for the {@link TypeNameVisitor type names} and
+ * {@link TypeNameWithCardinality type names with cardinality} of types during a single doclet run.
+ * <p>
+ * Types are cached by their qualified name including their type arguments.
+ * Types containing type variables are never cached,
+ * because the same variable name can have different bounds depending on where it was declared.
+ * <p>
+ * All names are interned in a table for the duration of the run,
+ * so type names that are not cached still share their name strings with all other type names.
+ * Comparing such names in {@code String.equals} is mostly an identity check.
+ *
+ * @author Sjoerd Talsma
+ */
+final class TypeNameCache {
+
+    private final Map<String, String> names = new ConcurrentHashMap<>();
+    private final Map<Element, String> packageNames = new ConcurrentHashMap<>();
+    private final TypeNameVisitor visitor = new TypeNameVisitor(this::intern);
+    private final Map<String, TypeName> typeNames = new ConcurrentHashMap<>();
+    private final Map<String, TypeNameWithCardinality> withCardinality = new ConcurrentHashMap<>();
+    private final Function<TypeMirror, TypeNameWithCardinality> cardinalityFunction;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    TypeNameCache(Types typeUtils) {
+        // nested lookups are part of the top-level lookup and are not counted as hits or misses themselves
+        this.cardinalityFunction = TypeNameWithCardinality.function(typeUtils,
+                type -> cached(typeNames, type, visitor::visit, false));
+    }
+
+    /**
+     * @param type The type to determine the name of.
+     * @return The (possibly cached) name of the type.
+     */
+    TypeName typeName(TypeMirror type) {
+        return cached(typeNames, type, visitor::visit, true);
+    }
+
+    /**
+     * @param packageElement The package to determine the name of.
+     * @return The interned qualified name of the package.
+     */
+    String packageName(PackageElement packageElement) {
+        return packageNames.computeIfAbsent(packageElement, pkg -> intern(packageElement.getQualifiedName().toString()));
+    }
+
+    /**
+     * @param name The name to intern.
+     * @return The same string for every equal name during this run.
+     */
+    String intern(String name) {
+        if (name == null) return null;
+        String existing = names.putIfAbsent(name, name);
+        return existing != null ? existing : name;
+    }
+
+    /**
+     * @param type The type to determine the name with cardinality of.
+     * @return The (possibly cached) name with cardinality of the type.
+     * @see TypeNameWithCardinality#function(Types)
+     */
+    TypeNameWithCardinality typeNameWithCardinality(TypeMirror type) {
+        return cached(withCardinality, type, cardinalityFunction, true);
+    }
+
+    /**
+     * @return The number of lookups for which a cached value was returned.
+     */
+    long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of lookups for which a value had to be computed.
+     */
+    long misses() {
+        return misses.sum();
+    }
+
+    private <T> T cached(Map<String, T> cache, TypeMirror type, Function<TypeMirror, T> function, boolean counted) {
+        if (!isCacheable(type)) {
+            if (counted) misses.increment();
+            return function.apply(type);
+        }
+        final String key = type.toString();
+        T result = cache.get(key);
+        if (result == null) {
+            if (counted) misses.increment();
+            result = function.apply(type);
+            T existing = cache.putIfAbsent(key, result);
+            if (existing != null) result = existing;
+        } else if (counted) {
+            hits.increment();
+        }
+        return result;
+    }
+
+    private static boolean isCacheable(TypeMirror type) {
+        if (type == null) return false;
+        else if (TypeKind.DECLARED.equals(type.getKind())) {
+            DeclaredType declaredType = (DeclaredType) type;
+            TypeMirror enclosingType = declaredType.getEnclosingType();
+            return (TypeKind.NONE.equals(enclosingType.getKind()) || isCacheable(enclosingType))
+                    && declaredType.getTypeArguments().stream().allMatch(TypeNameCache::isCacheable);
+        } else if (TypeKind.ARRAY.equals(type.getKind())) {
+            return isCacheable(((ArrayType) type).getComponentType());
+        } else if (TypeKind.WILDCARD.equals(type.getKind())) {
+            WildcardType wildcardType = (WildcardType) type;
+            return (wildcardType.getExtendsBound() == null || isCacheable(wildcardType.getExtendsBound()))
+                    && (wildcardType.getSuperBound() == null || isCacheable(wildcardType.getSuperBound()));
+        }
+        return type.getKind().isPrimitive();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{hits=" + hits() + ", misses=" + misses()
+                + ", size=" + (typeNames.size() + withCardinality.size()) + '}';
+    }
+
+}
@@ -22,6 +22,9 @@ import javax.lang.model.element.QualifiedNameable;
 import javax.lang.model.type.*;
 import javax.lang.model.util.SimpleTypeVisitor9;
 import java.util.EnumSet;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * The UML type name implemented as {@link TypeVisitor}.
@@ -32,31 +35,40 @@ final class TypeNameVisitor extends SimpleTypeVisitor9<TypeName, Void> {
     private static final EnumSet<TypeKind> NO_KNOWN_TYPES = EnumSet.of(
             TypeKind.VOID, TypeKind.NONE, TypeKind.NULL, TypeKind.ERROR, TypeKind.OTHER);
 
-    static final TypeNameVisitor INSTANCE = new TypeNameVisitor();
+    static final TypeNameVisitor INSTANCE = new TypeNameVisitor(Function.identity());
+
+    private final Function<String, String> names;
 
-    private TypeNameVisitor() {
+    /**
+     * Creates a visitor that passes all names through the {@code names} function,
+     * e.g. to share the name strings between type names.
+     *
+     * @param names The function returning the name to use for a name (required).
+     */
+    TypeNameVisitor(Function<String, String> names) {
+        this.names = requireNonNull(names, "Names function is <null>.");
     }
 
     @Override
     public TypeName visitPrimitive(PrimitiveType primitiveType, Void parameter) {
         // "byte", "char", "short", "int", "long", "float", "double", "boolean"
-        final String primitive = primitiveType.getKind().name().toLowerCase();
+        final String primitive = names.apply(primitiveType.getKind().name().toLowerCase());
         return new TypeName(primitive, primitive);
     }
 
     @Override
     public TypeName visitNoType(NoType noType, Void parameter) {
         // "void", "package", "module", "none"
-        final String none = noType.getKind().name().toLowerCase();
+        final String none = names.apply(noType.getKind().name().toLowerCase());
         return new TypeName(none, none);
     }
 
     @Override
     public TypeName visitDeclared(DeclaredType declaredType, Void parameter) {
         final Element el = declaredType.asElement();
-        final String simpleName = el.getSimpleName().toString();
+        final String simpleName = names.apply(el.getSimpleName().toString());
         final String qualifiedName = el instanceof QualifiedNameable
-                ? ((QualifiedNameable) el).getQualifiedName().toString() : simpleName;
+                ? names.apply(((QualifiedNameable) el).getQualifiedName().toString()) : simpleName;
         final TypeName[] generics = declaredType.getTypeArguments().stream()
                 .map(generic -> visit(generic, parameter))
                 .toArray(TypeName[]::new);
@@ -100,7 +112,8 @@ final class TypeNameVisitor extends SimpleTypeVisitor9<TypeName, Void> {
     @Override
     protected TypeName defaultAction(TypeMirror tp, Void parameter) {
         // TODO handle unknown type variables better!
-        return new TypeName(tp.toString(), tp.toString());
+        final String name = names.apply(tp.toString());
+        return new TypeName(name, name);
     }
 
     // TODO Figure out how the following should be represented in UML
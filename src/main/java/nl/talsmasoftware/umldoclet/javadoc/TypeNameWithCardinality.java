@@ -54,17 +54,31 @@ final class TypeNameWithCardinality {
      * @return The function to return TypeName with cardinality for use in same-package references.
      */
     static Function<TypeMirror, TypeNameWithCardinality> function(final Types typeUtils) {
+        return function(typeUtils, TypeNameVisitor.INSTANCE::visit);
+    }
+
+    /**
+     * Returns a function that determines type names with cardinality, using the specified function for type names.
+     *
+     * @param typeUtils    The type utils to use for supertype introspection (required).
+     * @param typeNameFunc The function to determine the name of a type (required).
+     * @return The function to return TypeName with cardinality for use in same-package references.
+     * @see #function(Types)
+     */
+    static Function<TypeMirror, TypeNameWithCardinality> function(final Types typeUtils,
+                                                                  final Function<TypeMirror, TypeName> typeNameFunc) {
         requireNonNull(typeUtils, "Type utils are <null>.");
+        requireNonNull(typeNameFunc, "Type name function is <null>.");
         return type -> {
             if (type instanceof ArrayType) {
-                TypeName componentName = TypeNameVisitor.INSTANCE.visit(((ArrayType) type).getComponentType());
+                TypeName componentName = typeNameFunc.apply(((ArrayType) type).getComponentType());
                 return new TypeNameWithCardinality(componentName, "*");
             } else if (type instanceof DeclaredType) {
                 Queue<TypeMirror> superTypes = new LinkedList<>(singleton(type));
                 Set<String> checkedTypes = new HashSet<>();
                 while (!superTypes.isEmpty()) {
                     TypeMirror superType = superTypes.poll();
-                    String qName = TypeNameVisitor.INSTANCE.visit(superType).qualified;
+                    String qName = typeNameFunc.apply(superType).qualified;
                     if (checkedTypes.add(qName)) { // Don't reiterate
                         String cardinality = null;
                         if ("java.util.Optional".equals(qName) || "com.google.common.base.Optional".equals(qName)) {
@@ -78,7 +92,7 @@ final class TypeNameWithCardinality {
                                 .map(c -> superType instanceof DeclaredType ? (DeclaredType) superType : null)
                                 .map(DeclaredType::getTypeArguments)
                                 .map(args -> args.size() == 1 ? args.get(0) : null)
-                                .map(TypeNameVisitor.INSTANCE::visit);
+                                .map(typeNameFunc);
                         if (typeArgument.isPresent()) {
                             return new TypeNameWithCardinality(typeArgument.get(), cardinality);
                         }
@@ -88,7 +102,7 @@ final class TypeNameWithCardinality {
                 }
             }
 
-            return new TypeNameWithCardinality(TypeNameVisitor.INSTANCE.visit(type), null);
+            return new TypeNameWithCardinality(typeNameFunc.apply(type), null);
         };
     }
 }
@@ -16,6 +16,7 @@
 package nl.talsmasoftware.umldoclet.javadoc;
 
 import jdk.javadoc.doclet.DocletEnvironment;
+import nl.talsmasoftware.umldoclet.metrics.DiagramMetrics;
 import nl.talsmasoftware.umldoclet.uml.*;
 import nl.talsmasoftware.umldoclet.uml.configuration.Configuration;
 
@@ -26,22 +27,33 @@ import javax.lang.model.element.Modifier;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
 import javax.lang.model.util.Types;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import static java.util.Collections.emptyList;
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
 import static javax.lang.model.element.ElementKind.ENUM;
+import static nl.talsmasoftware.umldoclet.logging.Message.DEBUG_TYPE_NAME_CACHE_STATISTICS;
 import static nl.talsmasoftware.umldoclet.uml.Reference.Side.from;
 import static nl.talsmasoftware.umldoclet.uml.Reference.Side.to;
 import static nl.talsmasoftware.umldoclet.uml.UMLPart.NEWLINE;
@@ -54,72 +66,109 @@ public class UMLFactory {
     final Configuration config;
     final ThreadLocal<UMLDiagram> diagram = new ThreadLocal<>();
     private final DocletEnvironment env;
-    private final Function<TypeMirror, TypeNameWithCardinality> typeNameWithCardinality;
+    private final TypeNameCache typeNames;
+    private final Map<TypeElement, TypeModel> typeModels = new ConcurrentHashMap<>();
+    private final Map<Element, Map<Element, Boolean>> assignableToExcludedType = new ConcurrentHashMap<>();
+    private final PackageDependencies packageDependencies;
 
     public UMLFactory(Configuration config, DocletEnvironment env) {
         this.config = requireNonNull(config, "Configuration is <null>.");
         this.env = requireNonNull(env, "Doclet environment is <null>.");
-        this.typeNameWithCardinality = TypeNameWithCardinality.function(env.getTypeUtils());
+        this.typeNames = new TypeNameCache(env.getTypeUtils());
+        this.packageDependencies = config.isPackageDependencies() ? new PackageDependencies() : null;
     }
 
     public UMLDiagram createClassDiagram(TypeElement classElement) {
+        final long start = System.nanoTime();
+        if (packageDependencies != null) {
+            packageDependencies.addDocumentedPackage(typeNames.packageName(env.getElementUtils().getPackageOf(classElement)));
+        }
         ClassDiagram classDiagram = new ClassDiagram(this, classElement);
         this.diagram.remove();
+        classDiagram.getMetrics().record(DiagramMetrics.MODEL, System.nanoTime() - start);
         return classDiagram;
     }
 
     public UMLDiagram createPackageDiagram(PackageElement packageElement) {
+        final long start = System.nanoTime();
+        if (packageDependencies != null) packageDependencies.addDocumentedPackage(typeNames.packageName(packageElement));
         PackageDiagram packageDiagram = new PackageDiagram(this, packageElement);
         this.diagram.remove();
+        packageDiagram.getMetrics().record(DiagramMetrics.MODEL, System.nanoTime() - start);
         return packageDiagram;
     }
 
+    /**
+     * Creates the overview of the dependencies between all documented packages.
+     * <p>
+     * The dependencies were indexed while the types of the other diagrams were modelled,
+     * so this diagram should be created after all other diagrams.
+     *
+     * @return The package dependency diagram, or empty if it is disabled or no packages were documented.
+     */
+    public Optional<UMLDiagram> createPackageDependencyDiagram() {
+        if (packageDependencies == null || packageDependencies.isEmpty()) return Optional.empty();
+        final long start = System.nanoTime();
+        PackageDependencyDiagram dependencyDiagram = new PackageDependencyDiagram(config, packageDependencies);
+        dependencyDiagram.getMetrics().record(DiagramMetrics.MODEL, System.nanoTime() - start);
+        return Optional.of(dependencyDiagram);
+    }
+
+    /**
+     * Reports how effective the caches of this factory were (when running verbose).
+     */
+    public void reportCacheStatistics() {
+        config.getLogger().debug(DEBUG_TYPE_NAME_CACHE_STATISTICS, typeNames.hits(), typeNames.misses());
+    }
+
     Namespace packageOf(TypeElement typeElement) {
-        return new Namespace(diagram.get(), env.getElementUtils().getPackageOf(typeElement).getQualifiedName().toString());
+        return diagram.get().namespace(typeNames.packageName(env.getElementUtils().getPackageOf(typeElement)));
     }
 
-    Field createField(Type containingType, VariableElement variable) {
+    private Function<Type, Field> fieldModel(VariableElement variable) {
         Set<Modifier> modifiers = requireNonNull(variable, "Variable element is <null>.").getModifiers();
-        return new Field(containingType,
-                visibilityOf(modifiers),
-                modifiers.contains(Modifier.STATIC),
-                variable.getSimpleName().toString(),
-                TypeNameVisitor.INSTANCE.visit(variable.asType())
-        );
+        Visibility visibility = visibilityOf(modifiers);
+        boolean isStatic = modifiers.contains(Modifier.STATIC);
+        String name = variable.getSimpleName().toString();
+        TypeName typeName = typeNames.typeName(variable.asType());
+        return containingType -> new Field(containingType, visibility, isStatic, name, typeName);
     }
 
-    private Parameters createParameters(List<? extends VariableElement> params) {
-        Parameters result = new Parameters();
-        Boolean varargs = null;
-        for (VariableElement param : params) {
-            if (varargs == null) result = result.varargs(varargs = isVarArgsMethod(param.getEnclosingElement()));
-            result = result.add(param.getSimpleName().toString(), TypeNameVisitor.INSTANCE.visit(param.asType()));
+    private Supplier<Parameters> parametersModel(List<? extends VariableElement> params) {
+        final boolean varargs = !params.isEmpty() && isVarArgsMethod(params.get(0).getEnclosingElement());
+        final String[] names = new String[params.size()];
+        final TypeName[] types = new TypeName[params.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = params.get(i).getSimpleName().toString();
+            types[i] = typeNames.typeName(params.get(i).asType());
         }
-        return result;
+        return () -> {
+            Parameters result = new Parameters().varargs(varargs);
+            for (int i = 0; i < names.length; i++) result = result.add(names[i], types[i]);
+            return result;
+        };
     }
 
-    Method createConstructor(Type containingType, ExecutableElement executableElement) {
+    private Function<Type, Method> constructorModel(ExecutableElement executableElement) {
         Set<Modifier> modifiers = requireNonNull(executableElement, "Executable element is <null>.").getModifiers();
-        return new Method(containingType,
-                visibilityOf(modifiers),
-                modifiers.contains(Modifier.ABSTRACT),
-                modifiers.contains(Modifier.STATIC),
-                containingType.name.simple,
-                createParameters(executableElement.getParameters()),
-                null
-        );
+        Visibility visibility = visibilityOf(modifiers);
+        boolean isAbstract = modifiers.contains(Modifier.ABSTRACT);
+        boolean isStatic = modifiers.contains(Modifier.STATIC);
+        Supplier<Parameters> parameters = parametersModel(executableElement.getParameters());
+        return containingType -> new Method(containingType, visibility, isAbstract, isStatic,
+                containingType.name.simple, parameters.get(), null);
     }
 
-    Method createMethod(Type containingType, ExecutableElement executableElement) {
+    private Function<Type, Method> methodModel(ExecutableElement executableElement) {
         Set<Modifier> modifiers = requireNonNull(executableElement, "Executable element is <null>.").getModifiers();
-        return new Method(containingType,
-                visibilityOf(modifiers),
-                modifiers.contains(Modifier.ABSTRACT),
-                modifiers.contains(Modifier.STATIC),
-                executableElement.getSimpleName().toString(),
-                createParameters(executableElement.getParameters()),
-                TypeNameVisitor.INSTANCE.visit(executableElement.getReturnType())
-        );
+        Visibility visibility = visibilityOf(modifiers);
+        boolean isAbstract = modifiers.contains(Modifier.ABSTRACT);
+        boolean isStatic = modifiers.contains(Modifier.STATIC);
+        String name = executableElement.getSimpleName().toString();
+        Supplier<Parameters> parameters = parametersModel(executableElement.getParameters());
+        TypeName returnType = typeNames.typeName(executableElement.getReturnType());
+        return containingType -> new Method(containingType, visibility, isAbstract, isStatic,
+                name, parameters.get(), returnType);
     }
 
     static Visibility visibilityOf(Set<Modifier> modifiers) {
@@ -138,8 +187,27 @@ public class UMLFactory {
         return children.add(child);
     }
 
+    /**
+     * Creates a new type from the {@link TypeModel model} of the type element.
+     * <p>
+     * The model of each type element is built only once, and is shared by all diagrams containing the type.
+     * In {@link Configuration#isStreaming() streaming mode} models are not retained,
+     * so memory use does not grow with the number of types in the project.
+     *
+     * @param containingPackage The package of the diagram to contain the type.
+     * @param typeElement       The type element to create the type for.
+     * @return The new type, that may be modified without affecting any other diagrams.
+     */
     private Type createType(Namespace containingPackage, TypeElement typeElement) {
-        ElementKind kind = requireNonNull(typeElement, "Type element is <null>.").getKind();
+        requireNonNull(typeElement, "Type element is <null>.");
+        TypeModel model = config.isStreaming() ? createTypeModel(typeElement)
+                : typeModels.computeIfAbsent(typeElement, this::createTypeModel);
+        return model.createType(containingPackage);
+    }
+
+    private TypeModel createTypeModel(TypeElement typeElement) {
+        if (packageDependencies != null) indexPackageDependencies(typeElement);
+        ElementKind kind = typeElement.getKind();
         Set<Modifier> modifiers = typeElement.getModifiers();
         Type.Classification classification = ENUM.equals(kind) ? Type.Classification.ENUM
                 : ElementKind.INTERFACE.equals(kind) ? Type.Classification.INTERFACE
@@ -147,52 +215,93 @@ public class UMLFactory {
                 : modifiers.contains(Modifier.ABSTRACT) ? Type.Classification.ABSTRACT_CLASS
                 : Type.Classification.CLASS;
 
-        Type type = new Type(containingPackage,
-                classification,
-                TypeNameVisitor.INSTANCE.visit(typeElement.asType())
-        );
-
         // Add the various parts of the class UML, order matters here, obviously!
+        List<Function<Type, ? extends TypeMember>> members = new ArrayList<>();
         List<? extends Element> enclosedElements = typeElement.getEnclosedElements();
         if (Type.Classification.ENUM.equals(classification)) enclosedElements.stream()
                 .filter(elem -> ElementKind.ENUM_CONSTANT.equals(elem.getKind()))
                 .filter(VariableElement.class::isInstance).map(VariableElement.class::cast)
-                .forEach(enumConst -> addChild(type, createField(type, enumConst)));
+                .forEach(enumConst -> members.add(fieldModel(enumConst)));
 
         enclosedElements.stream()
                 .filter(elem -> ElementKind.FIELD.equals(elem.getKind()))
                 .filter(VariableElement.class::isInstance).map(VariableElement.class::cast)
-                .forEach(field -> addChild(type, createField(type, field)));
+                .forEach(field -> members.add(fieldModel(field)));
 
         enclosedElements.stream()
                 .filter(elem -> ElementKind.CONSTRUCTOR.equals(elem.getKind()))
                 .filter(ExecutableElement.class::isInstance).map(ExecutableElement.class::cast)
-                .forEach(constructor -> addChild(type, createConstructor(type, constructor)));
+                .forEach(constructor -> members.add(constructorModel(constructor)));
 
         enclosedElements.stream()
                 .filter(elem -> ElementKind.METHOD.equals(elem.getKind()))
                 .filter(ExecutableElement.class::isInstance).map(ExecutableElement.class::cast)
                 .filter(method -> !isMethodFromExcludedSuperclass(method))
-                .forEach(method -> addChild(type, createMethod(type, method)));
+                .forEach(method -> members.add(methodModel(method)));
+
+        return new TypeModel(classification, typeNames.typeName(typeElement.asType()), members);
+    }
+
+    /**
+     * Adds the packages of the supertypes and member types of the type to the package dependency index.
+     * <p>
+     * This is done while the type is modelled anyway,
+     * so the dependencies of the whole project are indexed without another pass over the javadoc elements.
+     *
+     * @param typeElement The type being modelled.
+     */
+    private void indexPackageDependencies(TypeElement typeElement) {
+        final String packageName = typeNames.packageName(env.getElementUtils().getPackageOf(typeElement));
+        final Consumer<String> dependency = referenced -> packageDependencies.addDependency(packageName, referenced);
+        referencedPackages(typeElement.getSuperclass(), dependency);
+        typeElement.getInterfaces().forEach(interfaceType -> referencedPackages(interfaceType, dependency));
+        for (Element member : typeElement.getEnclosedElements()) {
+            if (member instanceof VariableElement) {
+                referencedPackages(member.asType(), dependency);
+            } else if (member instanceof ExecutableElement) {
+                ExecutableElement executable = (ExecutableElement) member;
+                referencedPackages(executable.getReturnType(), dependency);
+                executable.getParameters().forEach(param -> referencedPackages(param.asType(), dependency));
+            }
+        }
+    }
 
-        return type;
+    private void referencedPackages(TypeMirror type, Consumer<String> packageNames) {
+        if (type == null) return;
+        switch (type.getKind()) {
+            case ARRAY:
+                referencedPackages(((ArrayType) type).getComponentType(), packageNames);
+                break;
+            case DECLARED:
+                DeclaredType declaredType = (DeclaredType) type;
+                packageNames.accept(typeNames.packageName(env.getElementUtils().getPackageOf(declaredType.asElement())));
+                declaredType.getTypeArguments().forEach(argument -> referencedPackages(argument, packageNames));
+                break;
+            case WILDCARD:
+                referencedPackages(((WildcardType) type).getExtendsBound(), packageNames);
+                referencedPackages(((WildcardType) type).getSuperBound(), packageNames);
+                break;
+            default: // primitives, type variables and unresolved types have no package
+        }
     }
 
     private boolean isMethodFromExcludedSuperclass(ExecutableElement method) {
         boolean result = false;
         Element containingClass = method.getEnclosingElement();
         if (containingClass.getKind().isClass() || containingClass.getKind().isInterface()) {
-            result = methodsFromExcludedSuperclasses().stream().anyMatch(
-                    m -> similarMethodSignatures(m, method)
-                            && env.getTypeUtils().isAssignable(containingClass.asType(), m.getEnclosingElement().asType()));
+            result = methodsFromExcludedSuperclasses().getOrDefault(nameAndArity(method), emptyList()).stream().anyMatch(
+                    m -> isAssignable(containingClass, m.getEnclosingElement()) && similarMethodSignatures(m, method));
         }
         result = result || isExcludedEnumMethod(method);
         return result;
     }
 
-    private Collection<ExecutableElement> _methodsFromExcludedSuperclasses = null;
+    private Map<String, List<ExecutableElement>> _methodsFromExcludedSuperclasses = null;
 
-    private Collection<ExecutableElement> methodsFromExcludedSuperclasses() {
+    /**
+     * @return The non-abstract, non-private methods of the excluded types, indexed by {@link #nameAndArity}.
+     */
+    private Map<String, List<ExecutableElement>> methodsFromExcludedSuperclasses() {
         if (_methodsFromExcludedSuperclasses == null) {
             _methodsFromExcludedSuperclasses = config.getExcludedTypeReferences().stream()
                     .map(env.getElementUtils()::getTypeElement).filter(Objects::nonNull)
@@ -201,11 +310,29 @@ public class UMLFactory {
                     .filter(ExecutableElement.class::isInstance).map(ExecutableElement.class::cast)
                     .filter(method -> !method.getModifiers().contains(Modifier.ABSTRACT))
                     .filter(method -> visibilityOf(method.getModifiers()).compareTo(Visibility.PRIVATE) > 0)
-                    .collect(toCollection(LinkedHashSet::new));
+                    .distinct()
+                    .collect(groupingBy(UMLFactory::nameAndArity, LinkedHashMap::new, toList()));
         }
         return _methodsFromExcludedSuperclasses;
     }
 
+    private static String nameAndArity(ExecutableElement method) {
+        return method.getSimpleName() + "/" + method.getParameters().size();
+    }
+
+    /**
+     * Memoized {@link Types#isAssignable(TypeMirror, TypeMirror)} check whether a type is assignable to an excluded type.
+     *
+     * @param type         The type containing a method.
+     * @param excludedType The excluded type declaring a method with a similar signature.
+     * @return Whether {@code type} is assignable to {@code excludedType}.
+     */
+    private boolean isAssignable(Element type, Element excludedType) {
+        return assignableToExcludedType
+                .computeIfAbsent(type, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(excludedType, e -> env.getTypeUtils().isAssignable(type.asType(), e.asType()));
+    }
+
     private boolean isExcludedEnumMethod(ExecutableElement method) {
         if (config.getExcludedTypeReferences().contains(Enum.class.getName())
                 && ElementKind.ENUM.equals(method.getEnclosingElement().getKind())
@@ -213,7 +340,7 @@ public class UMLFactory {
             if ("values".equals(method.getSimpleName().toString()) && method.getParameters().isEmpty()) {
                 return true;
             } else if ("valueOf".equals(method.getSimpleName().toString()) && method.getParameters().size() == 1) {
-                String paramType = TypeNameVisitor.INSTANCE.visit(method.getParameters().get(0).asType()).qualified;
+                String paramType = typeNames.typeName(method.getParameters().get(0).asType()).qualified;
                 return String.class.getName().equals(paramType);
             }
         }
@@ -243,13 +370,12 @@ public class UMLFactory {
         }
     }
 
-    private Collection<Reference> findPackageReferences(
-            Namespace namespace, Map<Namespace, Collection<Type>> foreignTypes, TypeElement typeElement, Type type) {
-        Collection<Reference> references = new LinkedHashSet<>();
+    private void findPackageReferences(Namespace namespace, Map<Namespace, Collection<Type>> foreignTypes,
+                                       TypeElement typeElement, Type type, References references) {
 
         // Superclass reference.
         if (!TypeKind.NONE.equals(typeElement.getSuperclass().getKind())) {
-            String superclass = TypeNameVisitor.INSTANCE.visit(typeElement.getSuperclass()).qualified;
+            String superclass = typeNames.typeName(typeElement.getSuperclass()).qualified;
             if (!config.getExcludedTypeReferences().contains(superclass)) {
                 references.add(new Reference(
                         from(type.name.qualified), "--|>",
@@ -260,7 +386,7 @@ public class UMLFactory {
 
         // Implemented interfaces.
         typeElement.getInterfaces().forEach(interfaceType -> {
-            TypeName ifName = TypeNameVisitor.INSTANCE.visit(interfaceType);
+            TypeName ifName = typeNames.typeName(interfaceType);
             if (!config.getExcludedTypeReferences().contains(ifName.qualified)) {
                 references.add(new Reference(
                         from(type.name.qualified), "..|>",
@@ -275,7 +401,7 @@ public class UMLFactory {
         ElementKind enclosingKind = typeElement.getEnclosingElement().getKind();
         if (enclosingKind.isClass() || enclosingKind.isInterface()) {
             references.add(new Reference(
-                    from(TypeNameVisitor.INSTANCE.visit(typeElement.getEnclosingElement().asType()).qualified),
+                    from(typeNames.typeName(typeElement.getEnclosingElement().asType()).qualified),
                     "+--", to(type.name.qualified)));
         }
 
@@ -286,9 +412,9 @@ public class UMLFactory {
                 .filter(field -> config.getFieldConfig().include(visibilityOf(field.getModifiers())))
                 .forEach(field -> {
                     String fieldName = field.getSimpleName().toString();
-                    TypeNameWithCardinality fieldType = typeNameWithCardinality.apply(field.asType());
+                    TypeNameWithCardinality fieldType = typeNames.typeNameWithCardinality(field.asType());
                     if (namespace.contains(fieldType.typeName)) {
-                        addReference(references, new Reference(
+                        references.add(new Reference(
                                 from(type.name.qualified),
                                 "-->",
                                 to(fieldType.typeName.qualified, fieldType.cardinality),
@@ -306,9 +432,9 @@ public class UMLFactory {
                 .forEach(method -> {
                     String propertyName = propertyName(method);
                     if (propertyName != null) {
-                        TypeNameWithCardinality returnType = typeNameWithCardinality.apply(method.getReturnType());
+                        TypeNameWithCardinality returnType = typeNames.typeNameWithCardinality(method.getReturnType());
                         if (namespace.contains(returnType.typeName)) {
-                            addReference(references, new Reference(
+                            references.add(new Reference(
                                     from(type.name.qualified),
                                     "-->",
                                     to(returnType.typeName.qualified, returnType.cardinality),
@@ -318,8 +444,6 @@ public class UMLFactory {
                         }
                     }
                 });
-
-        return references;
     }
 
     private static String propertyName(ExecutableElement method) {
@@ -349,17 +473,6 @@ public class UMLFactory {
         return "boolean".equals(TypeNameVisitor.INSTANCE.visit(type).qualified);
     }
 
-    private static void addReference(Collection<Reference> collection, Reference reference) {
-        Reference result = reference;
-        Optional<Reference> found = collection.stream().filter(reference::equals).findFirst();
-        if (found.isPresent()) {
-            result = found.get();
-            collection.remove(result);
-            for (String note : reference.notes) result = result.addNote(note);
-        }
-        collection.add(result);
-    }
-
     private static Stream<TypeElement> innerTypes(TypeElement type) {
         return Stream.concat(Stream.of(type), type.getEnclosedElements().stream()
                 .filter(TypeElement.class::isInstance).map(TypeElement.class::cast)
@@ -369,8 +482,8 @@ public class UMLFactory {
     Namespace createPackage(UMLDiagram diagram,
                             PackageElement packageElement,
                             Map<Namespace, Collection<Type>> foreignTypes,
-                            List<Reference> references) {
-        Namespace pkg = new Namespace(diagram, packageElement.getQualifiedName().toString());
+                            References references) {
+        Namespace pkg = diagram.namespace(typeNames.packageName(packageElement));
 
         // Add all types contained in this package.
         packageElement.getEnclosedElements().stream()
@@ -378,8 +491,8 @@ public class UMLFactory {
                 .flatMap(UMLFactory::innerTypes)
                 .map(typeElement -> {
                     Type type = createType(pkg, typeElement);
-                    references.addAll(findPackageReferences(pkg, foreignTypes, typeElement, type));
-                    return type;
+                    findPackageReferences(pkg, foreignTypes, typeElement, type, references);
+                    return config.isStreaming() ? RenderedPart.of(pkg, type) : type;
                 })
                 .flatMap(type -> Stream.of(NEWLINE, type))
                 .forEach(child -> addChild(pkg, child));
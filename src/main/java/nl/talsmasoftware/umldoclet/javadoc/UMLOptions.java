@@ -18,12 +18,14 @@ package nl.talsmasoftware.umldoclet.javadoc;
 import jdk.javadoc.doclet.Doclet;
 import jdk.javadoc.doclet.Doclet.Option.Kind;
 
+import java.nio.charset.Charset;
 import java.util.*;
 import java.util.function.Consumer;
 
 import static java.util.Collections.emptyList;
 import static java.util.Comparator.comparing;
 import static java.util.Objects.requireNonNull;
+import static nl.talsmasoftware.umldoclet.logging.Message.ERROR_INVALID_OPTION_VALUE;
 
 /**
  * Type that serves as an 'anti-corruption' facade between our Doclet
@@ -54,9 +56,26 @@ final class UMLOptions {
             // Options from Standard doclet that we also support
             add(new Option("-d", 1, null, (args) -> config.destDirName = args.get(0)));
             add(new Option("-quiet", 0, Kind.OTHER, (args) -> config.quiet = true));
+            add(new Option("-docencoding", 1, null, (args) -> config.docEncoding = supportedCharset(args.get(0))));
 
             // Our own options
             add(new Option("-verbose", 0, Kind.OTHER, (args) -> config.verbose = true));
+            add(new Option("-umlEncoding", 1, Kind.OTHER, (args) -> config.umlEncoding = supportedCharset(args.get(0))));
+            add(new Option("-umlThreads", 1, Kind.OTHER, (args) -> config.threads = positiveInt(args.get(0))));
+            add(new Option("-umlImageFormats", 1, Kind.OTHER, (args) -> config.imageFormats = imageFormats(args.get(0))));
+            add(new Option("-umlDeferredImageFormats", 1, Kind.OTHER, (args) -> config.deferredImageFormats = imageFormats(args.get(0))));
+            add(new Option("-umlDaemon", 0, Kind.OTHER, (args) -> config.daemon = true));
+            add(new Option("-umlIncremental", 0, Kind.OTHER, (args) -> config.incremental = true));
+            add(new Option("-umlStreaming", 0, Kind.OTHER, (args) -> config.streaming = true));
+            add(new Option("-umlPackageDependencies", 0, Kind.OTHER, (args) -> config.packageDependencies = true));
+            add(new Option("-umlImageThreads", 1, Kind.OTHER, (args) -> config.imageThreads = nonNegativeInt(args.get(0))));
+            add(new Option("-umlCacheDir", 1, Kind.OTHER, (args) -> config.cacheDirName = args.get(0)));
+            add(new Option("-umlCacheSize", 1, Kind.OTHER, (args) -> config.cacheSizeMB = positiveInt(args.get(0))));
+            add(new Option("-umlPrunedPackages", 1, Kind.OTHER, (args) -> config.prunedPackages = splitList(args.get(0))));
+            add(new Option("-umlPruneThreshold", 1, Kind.OTHER, (args) -> config.pruneThreshold = nonNegativeInt(args.get(0))));
+            add(new Option("-umlMetricsFile", 1, Kind.OTHER, (args) -> config.metricsFileName = args.get(0)));
+            add(new Option("-umlRenderTimeout", 1, Kind.OTHER, (args) -> config.renderTimeoutSeconds = nonNegativeInt(args.get(0))));
+            add(new Option("-umlSlowestDiagrams", 1, Kind.OTHER, (args) -> config.slowestDiagrams = nonNegativeInt(args.get(0))));
 
         }};
     }
@@ -68,6 +87,40 @@ final class UMLOptions {
         return copy;
     }
 
+    private static int positiveInt(String value) {
+        int result = nonNegativeInt(value);
+        if (result == 0) throw new IllegalArgumentException("Expected a positive number, but got \"" + value + "\".");
+        return result;
+    }
+
+    private static int nonNegativeInt(String value) {
+        try {
+            int result = Integer.parseInt(value.trim());
+            if (result >= 0) return result;
+        } catch (NumberFormatException nfe) {
+            // fall through to the exception below
+        }
+        throw new IllegalArgumentException("Expected a non-negative number, but got \"" + value + "\".");
+    }
+
+    private static String supportedCharset(String value) {
+        String charsetName = value.trim();
+        if (Charset.isSupported(charsetName)) return charsetName;
+        throw new IllegalArgumentException("Unsupported character encoding: \"" + value + "\".");
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> result = new ArrayList<>();
+        for (String item : value.split("[,;\\s]+")) if (!item.isEmpty()) result.add(item);
+        return result;
+    }
+
+    private static List<String> imageFormats(String value) {
+        List<String> result = splitList(value.toLowerCase(Locale.ROOT));
+        result.remove("none");
+        return result;
+    }
+
     private class Option implements Doclet.Option {
         private final Consumer<List<String>> processor;
         private final String[] names;
@@ -129,9 +182,23 @@ final class UMLOptions {
             return Optional.ofNullable(standardOptions).flatMap(set -> set.stream().filter(this::matches).findFirst());
         }
 
+        /**
+         * Processes the option, reporting an invalid value as an error instead of throwing an exception.
+         *
+         * @param option    The option name as given on the command line.
+         * @param arguments The arguments of the option.
+         * @return {@code false} if the value was invalid so javadoc rejects the option, otherwise the result of the
+         * standard option, if any.
+         */
         @Override
         public boolean process(String option, List<String> arguments) {
-            processor.accept(arguments);
+            try {
+                processor.accept(arguments);
+            } catch (IllegalArgumentException invalidValue) {
+                config.getLogger().error(ERROR_INVALID_OPTION_VALUE,
+                        option, String.join(" ", arguments), invalidValue.getMessage());
+                return false;
+            }
             return findDelegate().map(delegate -> delegate.process(option, arguments)).orElse(true);
         }
 
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.logging;
+
+import java.io.PrintStream;
+import java.text.MessageFormat;
+
+/**
+ * Logger printing to the console, for use outside of javadoc.
+ * <p>
+ * Debug messages are only printed when verbose, warnings and errors are printed to {@code System.err}.
+ *
+ * @author Sjoerd Talsma
+ */
+public final class ConsoleLogger implements Logger {
+    private final boolean verbose;
+
+    public ConsoleLogger(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    @Override
+    public void debug(Message key, Object... args) {
+        if (verbose) print(System.out, key, args);
+    }
+
+    @Override
+    public void info(Message key, Object... args) {
+        print(System.out, key, args);
+    }
+
+    @Override
+    public void warn(Message key, Object... args) {
+        print(System.err, key, args);
+    }
+
+    @Override
+    public void error(Message key, Object... args) {
+        print(System.err, key, args);
+    }
+
+    private static void print(PrintStream stream, Message key, Object... args) {
+        String message = key.toString();
+        if (args.length > 0) message = MessageFormat.format(message, args);
+        synchronized (stream) {
+            stream.println(message);
+        }
+    }
+
+}
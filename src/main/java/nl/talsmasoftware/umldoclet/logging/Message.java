@@ -35,9 +35,25 @@ public enum Message {
     DOCLET_COPYRIGHT,
     PLANTUML_COPYRIGHT,
     DEBUG_CONFIGURED_IMAGE_FORMATS,
+    DEBUG_SKIPPING_UNCHANGED_FILE,
+    DEBUG_COPYING_CACHED_IMAGE,
+    DEBUG_TYPE_NAME_CACHE_STATISTICS,
+    DEBUG_METRICS_SUMMARY,
+    DEBUG_DAEMON_UNAVAILABLE,
+    DEBUG_RUNTIME_FOOTPRINT,
     INFO_GENERATING_FILE,
+    INFO_SLOWEST_DIAGRAMS,
+    INFO_GENERATED_IMAGES,
+    INFO_STARTING_DAEMON,
+    INFO_DAEMON_STARTED,
     WARNING_UNRECOGNIZED_IMAGE_FORMAT,
+    WARNING_COULDNT_WRITE_METRICS,
+    WARNING_IMAGE_RENDERING_TIMEOUT,
+    WARNING_TOO_MANY_ABANDONED_GENERATIONS,
+    WARNING_COULDNT_START_DAEMON,
     ERROR_COULDNT_RENDER_UML,
+    ERROR_COULDNT_WRITE_DEFERRED_IMAGES,
+    ERROR_INVALID_OPTION_VALUE,
     ERROR_UNANTICIPATED_ERROR_GENERATING_UML;
 
     private final String key = name().toLowerCase().replace('_', '.');
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Timing and size measurements of a single diagram.
+ * <p>
+ * Measurements may be recorded from multiple threads,
+ * e.g. when the images of the diagram are generated asynchronously.
+ *
+ * @author Sjoerd Talsma
+ */
+public final class DiagramMetrics {
+
+    /**
+     * Phase of creating the diagram model from the javadoc elements.
+     */
+    public static final String MODEL = "model";
+
+    /**
+     * Phase of rendering the diagram model to plantuml text.
+     */
+    public static final String RENDER = "render";
+
+    /**
+     * Phase of writing the plantuml file.
+     */
+    public static final String WRITE = "write";
+
+    /**
+     * Time spent waiting for the rendering daemon to generate the images.
+     */
+    public static final String DAEMON = "daemon";
+
+    /**
+     * Time spent on image generation that was abandoned because it exceeded the render timeout.
+     */
+    public static final String TIMEOUT = "timeout";
+
+    private final String name;
+    private final Map<String, LongAdder> nanosByPhase = new ConcurrentHashMap<>();
+    private final LongAdder bytesWritten = new LongAdder();
+    private volatile int elements = 0;
+
+    DiagramMetrics(String name) {
+        this.name = requireNonNull(name, "Diagram name is <null>.");
+    }
+
+    /**
+     * The phase of generating the image in the specified format.
+     *
+     * @param fileSuffix The file suffix of the image format, e.g. {@code ".svg"}.
+     * @return The name of the image generation phase, e.g. {@code "image.svg"}.
+     */
+    public static String imagePhase(String fileSuffix) {
+        return "image" + (fileSuffix.startsWith(".") ? fileSuffix : "." + fileSuffix);
+    }
+
+    /**
+     * @return The name of the diagram.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records time spent on this diagram.
+     *
+     * @param phase The phase the time was spent in.
+     * @param nanos The time spent in nanoseconds.
+     */
+    public void record(String phase, long nanos) {
+        nanosByPhase.computeIfAbsent(phase, p -> new LongAdder()).add(nanos);
+    }
+
+    /**
+     * Records the number of bytes that was written to a file for this diagram.
+     *
+     * @param bytes The number of bytes written.
+     */
+    public void bytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    /**
+     * Records the number of elements in this diagram.
+     *
+     * @param count The number of elements.
+     */
+    public void elements(int count) {
+        this.elements = count;
+    }
+
+    /**
+     * @return The time spent in nanoseconds, by phase, sorted by phase name.
+     */
+    public Map<String, Long> getNanosByPhase() {
+        Map<String, Long> result = new TreeMap<>();
+        nanosByPhase.forEach((phase, nanos) -> result.put(phase, nanos.sum()));
+        return result;
+    }
+
+    /**
+     * @return The total time spent on this diagram in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return nanosByPhase.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * @return The number of bytes written for this diagram.
+     */
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * @return The number of elements in this diagram.
+     */
+    public int getElements() {
+        return elements;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + '{' + name + ", " + getNanosByPhase()
+                + ", bytes=" + getBytesWritten() + ", elements=" + elements + '}';
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Comparator.comparing;
+
+/**
+ * Timing and size measurements of a complete doclet run, per diagram and in aggregate.
+ *
+ * @author Sjoerd Talsma
+ */
+public final class Metrics {
+
+    private final Map<String, DiagramMetrics> diagrams = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the metrics of a single diagram, creating them if needed.
+     *
+     * @param name The name of the diagram, e.g. the path of its {@code .puml} file.
+     * @return The metrics of the diagram.
+     */
+    public DiagramMetrics forDiagram(String name) {
+        return diagrams.computeIfAbsent(name, DiagramMetrics::new);
+    }
+
+    /**
+     * @return The metrics of all diagrams, sorted by name.
+     */
+    public List<DiagramMetrics> getDiagrams() {
+        List<DiagramMetrics> result = new ArrayList<>(diagrams.values());
+        result.sort(comparing(DiagramMetrics::getName));
+        return unmodifiableList(result);
+    }
+
+    /**
+     * @return The total time spent in nanoseconds, by phase, sorted by phase name.
+     */
+    public Map<String, Long> getNanosByPhase() {
+        return nanosByPhase(diagrams.values());
+    }
+
+    private static Map<String, Long> nanosByPhase(Collection<DiagramMetrics> diagrams) {
+        Map<String, Long> result = new TreeMap<>();
+        for (DiagramMetrics diagram : diagrams) diagram.getNanosByPhase().forEach((phase, nanos) -> result.merge(phase, nanos, Long::sum));
+        return result;
+    }
+
+    /**
+     * @return The total number of bytes written.
+     */
+    public long getBytesWritten() {
+        return diagrams.values().stream().mapToLong(DiagramMetrics::getBytesWritten).sum();
+    }
+
+    /**
+     * @return The total number of diagram elements.
+     */
+    public long getElements() {
+        return diagrams.values().stream().mapToLong(DiagramMetrics::getElements).sum();
+    }
+
+    /**
+     * Human readable summary of the aggregated metrics, one line per phase.
+     *
+     * @return The summary of this run.
+     */
+    public String summary() {
+        final List<DiagramMetrics> all = getDiagrams();
+        StringBuilder summary = new StringBuilder();
+        summary.append(all.size()).append(" diagrams, ")
+                .append(getElements()).append(" elements, ")
+                .append(getBytesWritten()).append(" bytes written");
+        final long totalNanos = all.stream().mapToLong(DiagramMetrics::getTotalNanos).sum();
+        nanosByPhase(all).forEach((phase, nanos) -> summary.append(System.lineSeparator())
+                .append(String.format("  %-12s %,10.1f ms (%4.1f%%)", phase, nanos / 1e6, totalNanos == 0 ? 0d : 100d * nanos / totalNanos)));
+        return summary.toString();
+    }
+
+    /**
+     * Human readable report of the diagrams that took the most time, one line per diagram.
+     *
+     * @param count The maximum number of diagrams to report.
+     * @return The report of the slowest diagrams.
+     */
+    public String slowestDiagrams(int count) {
+        StringBuilder report = new StringBuilder();
+        diagrams.values().stream()
+                .sorted(comparing(DiagramMetrics::getTotalNanos).reversed())
+                .limit(count)
+                .forEach(diagram -> report.append(System.lineSeparator())
+                        .append(String.format("  %,10.1f ms  %s", diagram.getTotalNanos() / 1e6, diagram.getName())));
+        return report.toString();
+    }
+
+    /**
+     * Writes all metrics as a JSON document.
+     *
+     * @param output The output to write the JSON to.
+     * @throws IOException if the JSON could not be written to the output.
+     */
+    public void writeJsonTo(Writer output) throws IOException {
+        final List<DiagramMetrics> all = getDiagrams();
+        output.write("{\n  \"diagramCount\": " + all.size());
+        output.write(",\n  \"elements\": " + getElements());
+        output.write(",\n  \"bytesWritten\": " + getBytesWritten());
+        output.write(",\n  \"nanosByPhase\": ");
+        writeJsonTo(output, nanosByPhase(all));
+        output.write(",\n  \"diagrams\": [");
+        String sep = "\n    ";
+        for (DiagramMetrics diagram : all) {
+            output.write(sep + "{\"name\": " + jsonString(diagram.getName()));
+            output.write(", \"elements\": " + diagram.getElements());
+            output.write(", \"bytesWritten\": " + diagram.getBytesWritten());
+            output.write(", \"nanosByPhase\": ");
+            writeJsonTo(output, diagram.getNanosByPhase());
+            output.write('}');
+            sep = ",\n    ";
+        }
+        output.write("\n  ]\n}\n");
+    }
+
+    private static void writeJsonTo(Writer output, Map<String, Long> values) throws IOException {
+        output.write('{');
+        String sep = "";
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            output.write(sep + jsonString(entry.getKey()) + ": " + entry.getValue());
+            sep = ", ";
+        }
+        output.write('}');
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (char ch : value.toCharArray()) {
+            if (ch == '"' || ch == '\\') json.append('\\').append(ch);
+            else if (ch < ' ') json.append(String.format("\\u%04x", (int) ch));
+            else json.append(ch);
+        }
+        return json.append('"').toString();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{diagrams=" + diagrams.size() + ", " + getNanosByPhase() + '}';
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering;
+
+import java.io.File;
+
+/**
+ * Collects the diagrams of which image generation is deferred until after the javadoc run.
+ *
+ * @author Sjoerd Talsma
+ */
+public interface DeferredRendering {
+
+    /**
+     * Adds a diagram of which the images must be generated later. This method may be called from multiple threads.
+     *
+     * @param pumlFile The {@code .puml} file of the diagram.
+     */
+    void add(File pumlFile);
+
+}
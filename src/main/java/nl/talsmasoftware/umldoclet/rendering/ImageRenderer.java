@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering;
+
+import java.io.IOException;
+
+/**
+ * Generates the image file(s) of a single diagram from its plantuml source.
+ *
+ * @author Sjoerd Talsma
+ * @see ImageRendererFactory
+ */
+public interface ImageRenderer {
+
+    /**
+     * Generates the image file(s) of the diagram, possibly asynchronously.
+     *
+     * @param uml The plantuml source of the diagram.
+     * @throws IOException In case of I/O errors while writing to an image file.
+     */
+    void render(String uml) throws IOException;
+
+}
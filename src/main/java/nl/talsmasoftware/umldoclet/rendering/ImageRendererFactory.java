@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering;
+
+import nl.talsmasoftware.umldoclet.metrics.DiagramMetrics;
+
+import java.io.File;
+
+/**
+ * Creates the {@link ImageRenderer image renderers} for diagrams.
+ * <p>
+ * This is the only way the doclet reaches the PlantUML library.
+ * Implementations are only instantiated when images are actually requested,
+ * so runs that only produce {@code .puml} files never load any PlantUML classes.
+ *
+ * @author Sjoerd Talsma
+ */
+public interface ImageRendererFactory {
+
+    /**
+     * @return The version of the library generating the images.
+     */
+    String libraryVersion();
+
+    /**
+     * Creates the image renderer for a single diagram.
+     *
+     * @param directory The directory to create the image file(s) in.
+     * @param baseName  The base name of the image file(s) to create, without extension.
+     * @param metrics   The metrics of the diagram (optional, nothing is recorded if {@code null}).
+     * @return The image renderer for the diagram.
+     */
+    ImageRenderer create(File directory, String baseName, DiagramMetrics metrics);
+
+}
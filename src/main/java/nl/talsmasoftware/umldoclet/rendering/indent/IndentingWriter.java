@@ -18,7 +18,7 @@ package nl.talsmasoftware.umldoclet.rendering.indent;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.nio.CharBuffer;
 
 import static java.lang.Character.isWhitespace;
 import static java.util.Objects.requireNonNull;
@@ -35,7 +35,7 @@ public class IndentingWriter extends Writer {
     private final Appendable delegate;
     private final Indentation indentation;
 
-    private final AtomicBoolean addWhitespace = new AtomicBoolean(false);
+    private boolean addWhitespace = false;
     private char lastWritten = '\n';
 
     protected IndentingWriter(Appendable delegate, Indentation indentation) {
@@ -48,7 +48,7 @@ public class IndentingWriter extends Writer {
         this.delegate = delegate;
         this.indentation = indentation == null ? Indentation.DEFAULT : indentation;
         this.lastWritten = lastWritten;
-        this.addWhitespace.set(addWhitespace);
+        this.addWhitespace = addWhitespace;
     }
 
     /**
@@ -81,7 +81,7 @@ public class IndentingWriter extends Writer {
      */
     public IndentingWriter withIndentation(Indentation newIndentation) {
         return newIndentation == null || this.indentation.equals(newIndentation) ? this
-                : new IndentingWriter(delegate, newIndentation, lastWritten, addWhitespace.get());
+                : new IndentingWriter(delegate, newIndentation, lastWritten, addWhitespace);
     }
 
     protected Indentation getIndentation() {
@@ -106,7 +106,9 @@ public class IndentingWriter extends Writer {
      * @return Reference to this writer for chaining purposes.
      */
     public IndentingWriter whitespace() {
-        addWhitespace.set(true);
+        synchronized (lock) {
+            addWhitespace = true;
+        }
         return this;
     }
 
@@ -120,22 +122,45 @@ public class IndentingWriter extends Writer {
         return ch == '\r' || ch == '\n';
     }
 
+    /**
+     * Writes the characters, inserting the indentation at the start of each new line.
+     * <p>
+     * The characters between line starts are passed to the delegate in bulk.
+     *
+     * @param cbuf The buffer containing the characters to be written.
+     * @param off  The offset index to write from.
+     * @param len  The number of characters to write.
+     * @throws IOException if the delegate threw an exception while writing.
+     */
     @Override
     public void write(char[] cbuf, int off, int len) throws IOException {
-        if (len > 0) {
+        if (len > 0) synchronized (lock) {
             char ch = cbuf[off];
-            synchronized (lock) {
-                if (addWhitespace.compareAndSet(true, false) && !isWhitespace(lastWritten) && !isWhitespace(ch)) {
-                    delegate.append(' ');
-                    lastWritten = ' ';
-                }
-                for (int i = 0; i < len; i++) {
-                    ch = cbuf[off + i];
-                    if (isEol(lastWritten) && !isEol(ch)) delegate.append(indentation);
-                    delegate.append(ch);
-                    lastWritten = ch;
+            if (addWhitespace && !isWhitespace(lastWritten) && !isWhitespace(ch)) {
+                delegate.append(' ');
+                lastWritten = ' ';
+            }
+            addWhitespace = false;
+            final int end = off + len;
+            int spanStart = off;
+            for (int i = off; i < end; i++) {
+                ch = cbuf[i];
+                if (isEol(lastWritten) && !isEol(ch)) {
+                    writeSpan(cbuf, spanStart, i);
+                    delegate.append(indentation);
+                    spanStart = i;
                 }
+                lastWritten = ch;
             }
+            writeSpan(cbuf, spanStart, end);
+        }
+    }
+
+    private void writeSpan(char[] cbuf, int start, int end) throws IOException {
+        if (start < end) {
+            if (delegate instanceof Writer) ((Writer) delegate).write(cbuf, start, end - start);
+            else if (delegate instanceof StringBuilder) ((StringBuilder) delegate).append(cbuf, start, end - start);
+            else delegate.append(CharBuffer.wrap(cbuf), start, end);
         }
     }
 
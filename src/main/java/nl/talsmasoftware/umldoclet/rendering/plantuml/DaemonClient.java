@@ -0,0 +1,188 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.plantuml;
+
+import nl.talsmasoftware.umldoclet.logging.Logger;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.DaemonProtocol.Endpoint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+import static nl.talsmasoftware.umldoclet.logging.Message.*;
+import static nl.talsmasoftware.umldoclet.rendering.plantuml.DaemonProtocol.*;
+
+/**
+ * Client delegating image generation to a local {@link RenderingDaemon}.
+ * <p>
+ * The client never fails because of the daemon: if the daemon is not running or a request fails,
+ * the request returns {@code false} and the caller is expected to generate the images in-process.
+ * The same applies to a daemon of another doclet or PlantUML version, or a daemon that does not reply in time.
+ * The daemon only returns the generated images; writing them is left to the caller.
+ * After a failure, the daemon file is read again at most once every few seconds.
+ *
+ * @author Sjoerd Talsma
+ */
+public final class DaemonClient {
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final int PING_TIMEOUT_MILLIS = 10_000;
+    private static final Duration DEFAULT_RENDER_TIMEOUT = Duration.ofMinutes(2);
+    private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final Logger logger;
+    private final File daemonFile;
+    private volatile Endpoint endpoint;
+    private volatile long nextAttempt = System.nanoTime();
+
+    /**
+     * Constructor. Creates a new client for the daemon published in the specified daemon file.
+     *
+     * @param logger     The logger.
+     * @param daemonFile The file containing the port and token of the daemon.
+     */
+    public DaemonClient(Logger logger, File daemonFile) {
+        this.logger = requireNonNull(logger, "Logger is <null>.");
+        this.daemonFile = requireNonNull(daemonFile, "Daemon file is <null>.");
+    }
+
+    /**
+     * @return The daemon file in the home directory of the current user.
+     */
+    public static File defaultDaemonFile() {
+        return new File(System.getProperty("user.home"), ".umldoclet" + File.separator + "daemon.properties");
+    }
+
+    /**
+     * Starts a new daemon process if no daemon of the same version is responding.
+     * <p>
+     * The daemon takes a while to start, until then the images are generated in-process.
+     *
+     * @return This client.
+     */
+    public DaemonClient startIfNotRunning() {
+        if (!ping()) try {
+            CodeSource codeSource = DaemonClient.class.getProtectionDomain().getCodeSource();
+            if (codeSource == null) throw new IllegalStateException("Location of the UML doclet classes is unknown.");
+            String classpath = new File(codeSource.getLocation().toURI()).getPath();
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            logger.info(INFO_STARTING_DAEMON, daemonFile);
+            new ProcessBuilder(java, "-cp", classpath, RenderingDaemon.class.getName(), "-daemonFile", daemonFile.getPath())
+                    .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        } catch (IOException | URISyntaxException | RuntimeException startException) {
+            logger.warn(WARNING_COULDNT_START_DAEMON, daemonFile, startException);
+        }
+        return this;
+    }
+
+    /**
+     * @return Whether the daemon is running and accepts our requests.
+     */
+    public boolean ping() {
+        return request(PING_TIMEOUT_MILLIS, PING) != null;
+    }
+
+    /**
+     * Requests the daemon to generate the images of a diagram.
+     *
+     * @param imageFormats The name(s) of the image format(s) to generate.
+     * @param uml          The plantuml source of the diagram.
+     * @param timeout      The time to wait for the images (optional, a default of two minutes if {@code null}).
+     * @return The generated images in the order of the image formats,
+     * or {@code null} if the daemon did not generate them in time.
+     */
+    public List<byte[]> render(Collection<String> imageFormats, String uml, Duration timeout) {
+        final long timeoutMillis = Math.max(1L, (timeout == null ? DEFAULT_RENDER_TIMEOUT : timeout).toMillis());
+        final List<byte[]> images = request((int) Math.min(Integer.MAX_VALUE, timeoutMillis), RENDER,
+                String.join(",", requireNonNull(imageFormats, "Image formats are <null>.")),
+                requireNonNull(uml, "Plantuml source is <null>."));
+        return images != null && images.size() == imageFormats.size() ? images : null;
+    }
+
+    /**
+     * Sends a request to the daemon.
+     *
+     * @param readTimeoutMillis The time to wait for the response.
+     * @param command           The command to send.
+     * @param arguments         The arguments of the command.
+     * @return The images in the response, or {@code null} if the request failed.
+     */
+    private List<byte[]> request(int readTimeoutMillis, String command, String... arguments) {
+        final Endpoint daemon = endpoint();
+        if (daemon == null) return null;
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), daemon.port), CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(readTimeoutMillis);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            writeString(output, daemon.token);
+            writeString(output, command);
+            for (String argument : arguments) writeString(output, argument);
+            output.flush();
+
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            boolean success = input.readBoolean();
+            String message = readString(input, MAX_UML_LENGTH);
+            if (!success) {
+                logger.debug(DEBUG_DAEMON_UNAVAILABLE, daemonFile, message);
+                return null;
+            }
+            final int count = input.readInt();
+            if (count < 0 || count > MAX_NAME_LENGTH) throw new IOException("Invalid number of images: " + count + ".");
+            final List<byte[]> images = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) images.add(readBytes(input, MAX_IMAGE_LENGTH));
+            return images;
+        } catch (IOException | RuntimeException requestException) {
+            endpoint = null;
+            logger.debug(DEBUG_DAEMON_UNAVAILABLE, daemonFile, requestException);
+            return null;
+        }
+    }
+
+    private Endpoint endpoint() {
+        Endpoint daemon = endpoint;
+        final long now = System.nanoTime();
+        if (daemon == null && now - nextAttempt >= 0) {
+            nextAttempt = now + RETRY_NANOS;
+            daemon = Endpoint.read(daemonFile);
+            if (daemon != null && !version().equals(daemon.version)) {
+                logger.debug(DEBUG_DAEMON_UNAVAILABLE, daemonFile, "version " + daemon.version + " instead of " + version());
+                daemon = null;
+            }
+            endpoint = daemon;
+        }
+        return daemon;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + '{' + daemonFile + '}';
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.plantuml;
+
+import net.sourceforge.plantuml.version.Version;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.Properties;
+import java.util.Set;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.attribute.PosixFilePermission.OWNER_EXECUTE;
+import static java.nio.file.attribute.PosixFilePermission.OWNER_READ;
+import static java.nio.file.attribute.PosixFilePermission.OWNER_WRITE;
+import static nl.talsmasoftware.umldoclet.logging.Message.DOCLET_VERSION;
+
+/**
+ * The wire format between the {@link DaemonClient} and the {@link RenderingDaemon}.
+ * <p>
+ * Every request starts with the secret token of the daemon and a command, followed by the arguments of the command.
+ * Every response is a success flag followed by an (error) message.
+ * A successful response continues with the number of generated images and the images themselves;
+ * the daemon never writes image files, the client alone decides whether and where to publish them.
+ * Strings are written as their length followed by their UTF-8 bytes, images as their length followed by their bytes.
+ *
+ * @author Sjoerd Talsma
+ */
+final class DaemonProtocol {
+    static final String PING = "ping", RENDER = "render";
+    static final int MAX_NAME_LENGTH = 4096, MAX_UML_LENGTH = 64 * 1024 * 1024, MAX_IMAGE_LENGTH = 256 * 1024 * 1024;
+
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = EnumSet.of(OWNER_READ, OWNER_WRITE);
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = EnumSet.of(OWNER_READ, OWNER_WRITE, OWNER_EXECUTE);
+
+    /**
+     * @return The versions of the doclet and PlantUML, that must be equal for the client and the daemon.
+     */
+    static String version() {
+        return DOCLET_VERSION + " (PlantUML " + Version.versionString() + ")";
+    }
+
+    /**
+     * The local port, secret token and version of a running daemon, as published in its daemon file.
+     */
+    static final class Endpoint {
+        final int port;
+        final String token, version;
+
+        Endpoint(int port, String token, String version) {
+            this.port = port;
+            this.token = token;
+            this.version = version;
+        }
+
+        static Endpoint read(File daemonFile) {
+            if (!daemonFile.isFile()) return null;
+            try (InputStream input = new FileInputStream(daemonFile)) {
+                Properties properties = new Properties();
+                properties.load(input);
+                String port = properties.getProperty("port"), token = properties.getProperty("token");
+                return port == null || token == null ? null
+                        : new Endpoint(Integer.parseInt(port.trim()), token.trim(), properties.getProperty("version"));
+            } catch (IOException | RuntimeException unreadable) {
+                return null;
+            }
+        }
+
+        /**
+         * Publishes the endpoint in the daemon file, that is only accessible by the current user.
+         * A new directory for the daemon file and the default {@code ~/.umldoclet} directory
+         * are made accessible by the current user only as well.
+         *
+         * @param daemonFile The daemon file to (atomically) replace.
+         * @throws IOException if the daemon file could not be written.
+         */
+        void write(File daemonFile) throws IOException {
+            final Path directory = daemonFile.getAbsoluteFile().getParentFile().toPath();
+            final boolean posix = Files.getFileStore(existingAncestor(directory)).supportsFileAttributeView(PosixFileAttributeView.class);
+            if (!Files.isDirectory(directory)) {
+                if (posix) Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+                else Files.createDirectories(directory);
+            }
+            if (posix && directory.equals(DaemonClient.defaultDaemonFile().getAbsoluteFile().getParentFile().toPath())) {
+                Files.setPosixFilePermissions(directory, OWNER_ONLY_DIRECTORY);
+            }
+
+            final byte[] content = ("port=" + port + "\ntoken=" + token + "\nversion=" + version + "\n")
+                    .getBytes(StandardCharsets.ISO_8859_1);
+            final FileAttribute<?>[] ownerOnly = posix
+                    ? new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(OWNER_ONLY_FILE)}
+                    : new FileAttribute<?>[0];
+            final Path temp = Files.createTempFile(directory, "." + daemonFile.getName() + "-", ".tmp", ownerOnly);
+            try {
+                Files.write(temp, content);
+                try {
+                    Files.move(temp, daemonFile.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException amnse) {
+                    Files.move(temp, daemonFile.toPath(), REPLACE_EXISTING);
+                }
+                if (posix) Files.setPosixFilePermissions(daemonFile.toPath(), OWNER_ONLY_FILE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private static Path existingAncestor(Path directory) {
+            Path existing = directory;
+            while (existing != null && !Files.exists(existing)) existing = existing.getParent();
+            return existing == null ? directory : existing;
+        }
+    }
+
+    private DaemonProtocol() {
+        throw new UnsupportedOperationException();
+    }
+
+    static void writeString(DataOutputStream output, String value) throws IOException {
+        writeBytes(output, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String readString(DataInputStream input, int maxLength) throws IOException {
+        return new String(readBytes(input, maxLength), StandardCharsets.UTF_8);
+    }
+
+    static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static byte[] readBytes(DataInputStream input, int maxLength) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > maxLength) throw new IOException("Invalid length: " + length + ".");
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+}
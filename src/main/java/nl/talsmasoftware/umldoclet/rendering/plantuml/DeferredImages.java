@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.plantuml;
+
+import nl.talsmasoftware.umldoclet.rendering.DeferredRendering;
+import nl.talsmasoftware.umldoclet.rendering.writers.AtomicFileWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Manifest of the diagrams of which image generation was deferred,
+ * so the images can be generated later by the {@link PlantumlBatchRenderer}.
+ * <p>
+ * The manifest is a UTF-8 text file listing the character encoding of the diagrams,
+ * the image formats to generate and the {@code .puml} files relative to the directory of the manifest:
+ * <pre>
+ * charset: UTF-8
+ * formats: png
+ * diagram: nl/talsmasoftware/umldoclet/UMLDoclet.puml
+ * </pre>
+ *
+ * @author Sjoerd Talsma
+ */
+public final class DeferredImages implements DeferredRendering {
+
+    /**
+     * The file name of the manifest within the destination directory.
+     */
+    public static final String MANIFEST_NAME = "umldoclet-deferred-images.txt";
+
+    private static final String CHARSET = "charset: ", FORMATS = "formats: ", DIAGRAM = "diagram: ";
+
+    private final File manifest;
+    private final Charset charset;
+    private final List<String> formats;
+    private final Set<String> diagrams = new ConcurrentSkipListSet<>();
+
+    /**
+     * Constructor. Creates a new, empty manifest.
+     *
+     * @param manifest The manifest file.
+     * @param charset  The character encoding of the {@code .puml} files.
+     * @param formats  The names of the image formats to generate later.
+     */
+    public DeferredImages(File manifest, Charset charset, Collection<String> formats) {
+        this.manifest = requireNonNull(manifest, "Manifest file is <null>.");
+        this.charset = requireNonNull(charset, "Character encoding is <null>.");
+        this.formats = unmodifiableList(new ArrayList<>(requireNonNull(formats, "Image formats are <null>.")));
+    }
+
+    /**
+     * Reads a previously written manifest.
+     *
+     * @param manifest The manifest file to read.
+     * @return The deferred images from the manifest.
+     * @throws IOException if the manifest could not be read.
+     */
+    public static DeferredImages read(File manifest) throws IOException {
+        Charset charset = StandardCharsets.UTF_8;
+        List<String> formats = new ArrayList<>();
+        List<String> diagrams = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+            if (line.startsWith(CHARSET)) charset = Charset.forName(line.substring(CHARSET.length()).trim());
+            else if (line.startsWith(FORMATS)) {
+                for (String format : line.substring(FORMATS.length()).split("[,\\s]+")) {
+                    if (!format.isEmpty()) formats.add(format);
+                }
+            } else if (line.startsWith(DIAGRAM)) diagrams.add(line.substring(DIAGRAM.length()).trim());
+        }
+        DeferredImages deferredImages = new DeferredImages(manifest, charset, formats);
+        deferredImages.diagrams.addAll(diagrams);
+        return deferredImages;
+    }
+
+    /**
+     * @return The manifest file.
+     */
+    public File getManifest() {
+        return manifest;
+    }
+
+    /**
+     * @return The character encoding of the {@code .puml} files.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * @return The names of the image formats to generate.
+     */
+    public List<String> getFormats() {
+        return formats;
+    }
+
+    /**
+     * Adds a diagram to the manifest. This method may be called from multiple threads.
+     *
+     * @param pumlFile The {@code .puml} file of the diagram.
+     */
+    @Override
+    public void add(File pumlFile) {
+        Path relative = baseDirectory().toPath().toAbsolutePath().normalize()
+                .relativize(pumlFile.toPath().toAbsolutePath().normalize());
+        diagrams.add(relative.toString().replace(File.separatorChar, '/'));
+    }
+
+    /**
+     * @return The {@code .puml} files of the diagrams in this manifest, sorted by path.
+     */
+    public List<File> getDiagrams() {
+        List<File> result = new ArrayList<>(diagrams.size());
+        for (String diagram : diagrams) result.add(new File(baseDirectory(), diagram));
+        return unmodifiableList(result);
+    }
+
+    /**
+     * Atomically writes the manifest file.
+     *
+     * @throws IOException if the manifest could not be written.
+     */
+    public void write() throws IOException {
+        try (Writer writer = new AtomicFileWriter(manifest, StandardCharsets.UTF_8)) {
+            writer.write(CHARSET + charset.name() + '\n');
+            writer.write(FORMATS + String.join(", ", formats) + '\n');
+            for (String diagram : diagrams) writer.write(DIAGRAM + diagram + '\n');
+        }
+    }
+
+    private File baseDirectory() {
+        return manifest.getAbsoluteFile().getParentFile();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + '{' + manifest + ", formats=" + formats + ", diagrams=" + diagrams.size() + '}';
+    }
+
+}
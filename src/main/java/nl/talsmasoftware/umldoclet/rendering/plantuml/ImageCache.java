@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.plantuml;
+
+import net.sourceforge.plantuml.version.Version;
+import nl.talsmasoftware.umldoclet.rendering.writers.AtomicFileWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Comparator.comparingLong;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Directory of previously rendered images, keyed by the SHA-256 hash of the plantuml source
+ * and the PlantUML version that rendered it.
+ * <p>
+ * The directory can be shared between builds and concurrently running javadoc processes:
+ * images are only ever added to the cache by atomically moving a completely written temporary file into place,
+ * so other processes either see a complete image or none at all.
+ * Cached images get the default permissions for new files, so the cache can be shared with other users.
+ * <p>
+ * The total size of the cache is bounded; when it is exceeded the least recently used images are evicted.
+ * Restoring an image from the cache marks it as recently used.
+ *
+ * @author Sjoerd Talsma
+ */
+public final class ImageCache {
+    private static final String TEMP_PREFIX = "tmp-";
+
+    private final Path directory;
+    private final long maxSize;
+    private long estimatedSize = -1L;
+
+    /**
+     * Creates a new image cache in the specified directory.
+     *
+     * @param directory The cache directory (will be created if it does not yet exist).
+     * @param maxSize   The maximum total size of the cached images in bytes.
+     */
+    public ImageCache(File directory, long maxSize) {
+        this.directory = requireNonNull(directory, "Cache directory is <null>.").toPath();
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Determines the cache key for a plantuml diagram.
+     * The key is the same for all image formats of the same diagram.
+     *
+     * @param uml The plantuml source of the diagram.
+     * @return The key to find the rendered images of this diagram in the cache.
+     */
+    public String keyOf(String uml) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(Version.versionString().getBytes(StandardCharsets.UTF_8));
+            sha256.update((byte) 0);
+            byte[] hash = sha256.digest(uml.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return key.toString();
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM.", nsae);
+        }
+    }
+
+    /**
+     * Copies a cached image to the target file, if available.
+     * <p>
+     * The copy is not atomic, so the target should be a temporary file that is moved into place afterwards.
+     *
+     * @param key        The {@link #keyOf(String) key} of the diagram.
+     * @param fileSuffix The file suffix of the image format, e.g. {@code ".svg"}.
+     * @param target     The (temporary) file to copy the image to; it is replaced if it exists.
+     * @return {@code true} if the image was restored from the cache, {@code false} if it must be rendered.
+     */
+    public boolean restore(String key, String fileSuffix, File target) {
+        final Path cached = directory.resolve(key + fileSuffix);
+        try {
+            Files.copy(cached, target.toPath(), REPLACE_EXISTING);
+        } catch (IOException notCached) {
+            return false; // Not cached, or just evicted by another process.
+        }
+        try {
+            Files.setLastModifiedTime(cached, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // Only affects eviction order.
+        }
+        return true;
+    }
+
+    /**
+     * Adds a rendered image to the cache, evicting the least recently used images if the cache grows too large.
+     *
+     * @param key        The {@link #keyOf(String) key} of the diagram.
+     * @param fileSuffix The file suffix of the image format, e.g. {@code ".svg"}.
+     * @param image      The rendered image.
+     * @throws IOException if the image could not be written to the cache directory.
+     */
+    public void store(String key, String fileSuffix, byte[] image) throws IOException {
+        Files.createDirectories(directory);
+        final Path temp = AtomicFileWriter.createTempFile(directory, TEMP_PREFIX, fileSuffix);
+        try {
+            Files.write(temp, image);
+            final Path cached = directory.resolve(key + fileSuffix);
+            try {
+                Files.move(temp, cached, ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(temp, cached, REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        if (exceedsMaxSize(image.length)) evictLeastRecentlyUsed();
+    }
+
+    private synchronized boolean exceedsMaxSize(long added) throws IOException {
+        if (estimatedSize < 0L) estimatedSize = cachedImages().stream().mapToLong(ImageCache::sizeOf).sum();
+        else estimatedSize += added;
+        return estimatedSize > maxSize;
+    }
+
+    /**
+     * Evicts the least recently used images until the cache is below its maximum size again.
+     * <p>
+     * Other processes may evict the same images concurrently; images that are already gone are simply skipped.
+     *
+     * @throws IOException if the cache directory could not be listed.
+     */
+    private synchronized void evictLeastRecentlyUsed() throws IOException {
+        final Map<Path, Long> lastUsed = new HashMap<>();
+        for (Path image : cachedImages()) lastUsed.put(image, lastModified(image));
+        final List<Path> images = new ArrayList<>(lastUsed.keySet());
+        images.sort(comparingLong(lastUsed::get));
+        long size = images.stream().mapToLong(ImageCache::sizeOf).sum();
+        for (int i = 0; i < images.size() && size > maxSize; i++) {
+            long imageSize = sizeOf(images.get(i));
+            if (Files.deleteIfExists(images.get(i))) size -= imageSize;
+        }
+        estimatedSize = size;
+    }
+
+    private List<Path> cachedImages() throws IOException {
+        final List<Path> images = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    if (!file.getFileName().toString().startsWith(TEMP_PREFIX)) images.add(file);
+                }
+            }
+        }
+        return images;
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException evicted) {
+            return 0L;
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException evicted) {
+            return 0L;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + '{' + directory + '}';
+    }
+
+}
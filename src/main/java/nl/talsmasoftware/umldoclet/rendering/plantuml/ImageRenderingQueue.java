@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.plantuml;
+
+import nl.talsmasoftware.umldoclet.logging.Logger;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.requireNonNull;
+import static nl.talsmasoftware.umldoclet.logging.Message.ERROR_COULDNT_RENDER_UML;
+
+/**
+ * Bounded queue of image rendering tasks, drained by its own pool of worker threads.
+ * <p>
+ * Submitting a task blocks while the queue is at its capacity, so producers of diagrams cannot
+ * run ahead of image rendering too far and the amount of memory held by queued diagrams stays bounded.
+ *
+ * @author Sjoerd Talsma
+ */
+public final class ImageRenderingQueue implements Executor {
+    private static final int QUEUED_TASKS_PER_THREAD = 4;
+
+    private final Logger logger;
+    private final ExecutorService workers;
+    private final Semaphore capacity;
+    private final AtomicBoolean failures = new AtomicBoolean(false);
+
+    /**
+     * Creates a new queue with {@code threads} workers.
+     *
+     * @param logger  The logger to report failed rendering tasks to.
+     * @param threads The number of worker threads rendering images (at least one).
+     */
+    public ImageRenderingQueue(Logger logger, int threads) {
+        this(logger, threads, threads * (QUEUED_TASKS_PER_THREAD + 1));
+    }
+
+    ImageRenderingQueue(Logger logger, int threads, int capacity) {
+        if (threads < 1) throw new IllegalArgumentException("Image rendering needs at least one thread.");
+        this.logger = requireNonNull(logger, "Logger is <null>.");
+        this.capacity = new Semaphore(Math.max(threads, capacity));
+        final AtomicInteger threadCount = new AtomicInteger(0);
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "umldoclet-images-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Adds the rendering task to the queue, blocking while the queue is full.
+     *
+     * @param task The rendering task to execute asynchronously.
+     */
+    @Override
+    public void execute(Runnable task) {
+        requireNonNull(task, "Rendering task is <null>.");
+        capacity.acquireUninterruptibly();
+        try {
+            workers.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException failure) {
+                    failures.set(true);
+                    logger.error(ERROR_COULDNT_RENDER_UML, task, failure);
+                } finally {
+                    capacity.release();
+                }
+            });
+        } catch (RejectedExecutionException rejected) {
+            capacity.release();
+            throw rejected;
+        }
+    }
+
+    /**
+     * Stops accepting new tasks and waits until all queued rendering tasks are completed.
+     *
+     * @return {@code true} if all queued tasks rendered successfully, {@code false} otherwise.
+     */
+    public boolean awaitCompletion() {
+        workers.shutdown();
+        try {
+            while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                // keep waiting, rendering is still in progress
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+            return false;
+        }
+        return !failures.get();
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.plantuml;
+
+import nl.talsmasoftware.umldoclet.logging.ConsoleLogger;
+import nl.talsmasoftware.umldoclet.logging.Logger;
+import nl.talsmasoftware.umldoclet.metrics.Metrics;
+import nl.talsmasoftware.umldoclet.rendering.writers.AtomicFileWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+import static nl.talsmasoftware.umldoclet.logging.Message.*;
+
+/**
+ * Generates the images of diagrams outside of javadoc,
+ * so they can be produced after (or in parallel with) the documentation build.
+ * <p>
+ * The diagrams are either read from the {@link DeferredImages manifest} written by the doclet,
+ * or found by walking a directory tree of {@code .puml} files.
+ * Diagrams of which all images are at least as recent as the {@code .puml} file are skipped.
+ * <p>
+ * Usage: {@code java -cp umldoclet.jar nl.talsmasoftware.umldoclet.rendering.plantuml.PlantumlBatchRenderer
+ * [options] <manifest or directory>...} with the following options:
+ * <ul>
+ * <li>{@code -verbose}: Also print debug messages.</li>
+ * <li>{@code -threads <n>}: The number of worker threads, default is the number of processors.</li>
+ * <li>{@code -formats <formats>}: The image formats for directories, default is {@code svg,png}.</li>
+ * <li>{@code -encoding <charset>}: The encoding of {@code .puml} files in directories, default is {@code UTF-8}.</li>
+ * <li>{@code -force}: Also generate images that are up-to-date.</li>
+ * <li>{@code -metricsFile <file>}: Write the timing of each diagram to a JSON file.</li>
+ * </ul>
+ *
+ * @author Sjoerd Talsma
+ * @see DeferredImages
+ */
+public class PlantumlBatchRenderer {
+
+    private final Logger logger;
+    private final int threads;
+    private final boolean force;
+    private final Metrics metrics = new Metrics();
+
+    /**
+     * Constructor. Creates a new renderer generating the images sequentially, skipping up-to-date images.
+     *
+     * @param logger The logger.
+     */
+    public PlantumlBatchRenderer(Logger logger) {
+        this(logger, 1, false);
+    }
+
+    /**
+     * Constructor. Creates a new renderer with a pool of worker threads.
+     *
+     * @param logger  The logger.
+     * @param threads The number of worker threads to generate images with.
+     * @param force   Whether to generate images even if they are up-to-date.
+     */
+    public PlantumlBatchRenderer(Logger logger, int threads, boolean force) {
+        this.logger = requireNonNull(logger, "Logger is <null>.");
+        this.threads = Math.max(1, threads);
+        this.force = force;
+    }
+
+    /**
+     * @return The image generation time of each diagram rendered so far.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Generates the images of all diagrams in the manifest.
+     *
+     * @param deferredImages The manifest of deferred images.
+     * @return Whether all images were generated successfully.
+     */
+    public boolean render(DeferredImages deferredImages) {
+        return render(deferredImages.getDiagrams(), deferredImages.getCharset(),
+                deferredImages.getFormats().toArray(new String[0]));
+    }
+
+    /**
+     * Generates the images of all {@code .puml} files within a directory tree.
+     *
+     * @param directory    The directory to search for {@code .puml} files.
+     * @param charset      The character encoding of the {@code .puml} files.
+     * @param imageFormats The name(s) of the image format(s) to generate.
+     * @return Whether all images were generated successfully.
+     * @throws IOException if the directory could not be searched.
+     */
+    public boolean render(File directory, Charset charset, String... imageFormats) throws IOException {
+        try (Stream<Path> files = Files.walk(directory.toPath())) {
+            List<File> pumlFiles = files.filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().endsWith(".puml"))
+                    .sorted().map(Path::toFile).collect(toList());
+            return render(pumlFiles, charset, imageFormats);
+        }
+    }
+
+    /**
+     * Generates the images of the specified {@code .puml} files using the pool of worker threads.
+     *
+     * @param pumlFiles    The {@code .puml} files to generate images for.
+     * @param charset      The character encoding of the {@code .puml} files.
+     * @param imageFormats The name(s) of the image format(s) to generate.
+     * @return Whether all images were generated successfully.
+     */
+    public boolean render(Collection<File> pumlFiles, Charset charset, String... imageFormats) {
+        final AtomicInteger threadCount = new AtomicInteger(0);
+        final ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "umldoclet-batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Boolean>> results = new ArrayList<>(pumlFiles.size());
+            for (File pumlFile : pumlFiles) {
+                results.add(workers.submit(() -> renderDiagram(pumlFile, charset, imageFormats)));
+            }
+            boolean result = true;
+            for (Future<Boolean> rendered : results) result = rendered.get() && result;
+            return result;
+        } catch (ExecutionException unexpected) {
+            logger.error(ERROR_UNANTICIPATED_ERROR_GENERATING_UML, unexpected.getCause());
+            return false;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private boolean renderDiagram(File pumlFile, Charset charset, String... imageFormats) {
+        try {
+            final PlantumlImageRenderer renderer = new PlantumlImageRenderer(logger, null, null,
+                    metrics.forDiagram(pumlFile.getPath()), null,
+                    pumlFile.getParentFile(), baseName(pumlFile), imageFormats);
+            if (!force && renderer.isUpToDate(pumlFile)) {
+                logger.debug(DEBUG_SKIPPING_UNCHANGED_FILE, pumlFile);
+                return true;
+            }
+            final long start = System.nanoTime();
+            renderer.render(new String(Files.readAllBytes(pumlFile.toPath()), charset));
+            logger.info(INFO_GENERATED_IMAGES, pumlFile, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return true;
+        } catch (IOException | RuntimeException renderException) {
+            logger.error(ERROR_COULDNT_RENDER_UML, pumlFile, renderException);
+            return false;
+        }
+    }
+
+    private static String baseName(File file) {
+        String name = file.getName();
+        int lastDot = name.lastIndexOf('.');
+        return lastDot > 0 ? name.substring(0, lastDot) : name;
+    }
+
+    public static void main(String... args) {
+        boolean verbose = false, force = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String[] formats = {"svg", "png"};
+        Charset charset = StandardCharsets.UTF_8;
+        File metricsFile = null;
+        List<File> sources = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("-verbose".equals(args[i])) verbose = true;
+                else if ("-force".equals(args[i])) force = true;
+                else if ("-threads".equals(args[i])) threads = Integer.parseInt(args[++i].trim());
+                else if ("-formats".equals(args[i])) formats = args[++i].split("[,;\\s]+");
+                else if ("-encoding".equals(args[i])) charset = Charset.forName(args[++i].trim());
+                else if ("-metricsFile".equals(args[i])) metricsFile = new File(args[++i]);
+                else sources.add(new File(args[i]));
+            }
+        } catch (RuntimeException invalidArgument) {
+            System.err.println(invalidArgument);
+            sources.clear();
+        }
+        if (sources.isEmpty()) {
+            System.err.println("Usage: " + PlantumlBatchRenderer.class.getName()
+                    + " [-verbose] [-threads <n>] [-formats <formats>] [-encoding <charset>] [-force]"
+                    + " [-metricsFile <file>] <manifest or directory>...");
+            System.exit(2);
+        }
+
+        final Logger logger = new ConsoleLogger(verbose);
+        final PlantumlBatchRenderer renderer = new PlantumlBatchRenderer(logger, threads, force);
+        boolean result = true;
+        for (File source : sources) {
+            try {
+                result = (source.isDirectory() ? renderer.render(source, charset, formats)
+                        : renderer.render(DeferredImages.read(source))) && result;
+            } catch (IOException | RuntimeException readException) {
+                logger.error(ERROR_COULDNT_RENDER_UML, source, readException);
+                result = false;
+            }
+        }
+
+        final Metrics metrics = renderer.getMetrics();
+        logger.debug(DEBUG_METRICS_SUMMARY, metrics.summary());
+        if (!metrics.getDiagrams().isEmpty()) logger.info(INFO_SLOWEST_DIAGRAMS, metrics.slowestDiagrams(5));
+        if (metricsFile != null) {
+            try (Writer writer = new AtomicFileWriter(metricsFile, StandardCharsets.UTF_8)) {
+                metrics.writeJsonTo(writer);
+            } catch (IOException | RuntimeException writeException) {
+                logger.warn(WARNING_COULDNT_WRITE_METRICS, metricsFile, writeException);
+            }
+        }
+        System.exit(result ? 0 : 1);
+    }
+
+}
@@ -0,0 +1,529 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.plantuml;
+
+import net.sourceforge.plantuml.FileFormat;
+import net.sourceforge.plantuml.FileFormatOption;
+import net.sourceforge.plantuml.SourceStringReader;
+import nl.talsmasoftware.umldoclet.logging.Logger;
+import nl.talsmasoftware.umldoclet.metrics.DiagramMetrics;
+import nl.talsmasoftware.umldoclet.rendering.ImageRenderer;
+import nl.talsmasoftware.umldoclet.rendering.writers.AtomicFileWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.requireNonNull;
+import static nl.talsmasoftware.umldoclet.logging.Message.*;
+
+/**
+ * Generates the image files for a diagram from its plantuml source, using the PlantUML library.
+ * <p>
+ * The source is passed as-is to PlantUML, no copies are made of it.
+ * Every image is generated into a temporary file that is moved into place once it is complete,
+ * so readers never see a partially written image.
+ *
+ * @author Sjoerd Talsma
+ */
+public class PlantumlImageRenderer implements ImageRenderer {
+
+    /**
+     * Daemon threads generating images with a render timeout, so abandoned generations cannot block the JVM exit.
+     * <p>
+     * Besides the generations that are being waited for, the pool only contains abandoned generations
+     * that are still running. Their number is limited by {@link #MAX_ABANDONED_GENERATIONS}.
+     */
+    private static final ExecutorService TIMED_GENERATION = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "umldoclet-timed-images");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The maximum number of abandoned generations still running before no more images are generated with a timeout.
+     */
+    private static final int MAX_ABANDONED_GENERATIONS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final AtomicInteger ABANDONED_GENERATIONS = new AtomicInteger(0);
+
+    private final Logger logger;
+    private final File directory;
+    private final String baseName;
+    private final Collection<FileFormat> imageFormats;
+    private final Executor imageExecutor;
+    private final ImageCache imageCache;
+    private final DaemonClient daemon;
+    private final DiagramMetrics metrics;
+    private final Duration renderTimeout;
+
+    /**
+     * Constructor. Creates a new renderer for the images of a single diagram;
+     * one for each specified <code>imageFormats</code>.
+     * The name of the file(s) to create is based on the specified <code>directory</code>, <code>baseName</code> and
+     * {@code default file extension} of the particular {@code FileFormat}.
+     *
+     * @param logger        The logger.
+     * @param imageExecutor The executor to generate the images with
+     *                      (optional, images are generated while rendering if {@code null}).
+     * @param imageCache    The cache of previously rendered images (optional, no caching if {@code null}).
+     * @param directory     The directory to create the image file(s) in.
+     * @param baseName      The base name of the image file(s) to create, without extension.
+     * @param imageFormats  The name(s) of the image format(s) to generate.
+     */
+    public PlantumlImageRenderer(Logger logger, Executor imageExecutor, ImageCache imageCache,
+                                 File directory, String baseName, String... imageFormats) {
+        this(logger, imageExecutor, imageCache, null, null, directory, baseName, imageFormats);
+    }
+
+    /**
+     * Constructor. Creates a new renderer for the images of a single diagram,
+     * recording the generation time and size of each image in the diagram {@code metrics}.
+     * <p>
+     * Image generation that takes longer than the {@code renderTimeout} is abandoned with a warning.
+     *
+     * @param logger        The logger.
+     * @param imageExecutor The executor to generate the images with
+     *                      (optional, images are generated while rendering if {@code null}).
+     * @param imageCache    The cache of previously rendered images (optional, no caching if {@code null}).
+     * @param metrics       The metrics of the diagram (optional, nothing is recorded if {@code null}).
+     * @param renderTimeout The maximum time to generate all images of the diagram
+     *                      (optional, no time limit if {@code null} or zero).
+     * @param directory     The directory to create the image file(s) in.
+     * @param baseName      The base name of the image file(s) to create, without extension.
+     * @param imageFormats  The name(s) of the image format(s) to generate.
+     */
+    public PlantumlImageRenderer(Logger logger, Executor imageExecutor, ImageCache imageCache, DiagramMetrics metrics,
+                                 Duration renderTimeout, File directory, String baseName, String... imageFormats) {
+        this(logger, imageExecutor, imageCache, null, metrics, renderTimeout, directory, baseName, imageFormats);
+    }
+
+    /**
+     * Constructor. Creates a new renderer for the images of a single diagram,
+     * that delegates image generation to a running {@link RenderingDaemon}.
+     * If the daemon is not available, the images are generated in-process.
+     *
+     * @param logger        The logger.
+     * @param imageExecutor The executor to generate the images with
+     *                      (optional, images are generated while rendering if {@code null}).
+     * @param imageCache    The cache of previously rendered images (optional, no caching if {@code null}).
+     * @param daemon        The client of the rendering daemon (optional, images are generated in-process if {@code null}).
+     * @param metrics       The metrics of the diagram (optional, nothing is recorded if {@code null}).
+     * @param renderTimeout The maximum time to generate all images of the diagram
+     *                      (optional, no time limit if {@code null} or zero).
+     * @param directory     The directory to create the image file(s) in.
+     * @param baseName      The base name of the image file(s) to create, without extension.
+     * @param imageFormats  The name(s) of the image format(s) to generate.
+     */
+    public PlantumlImageRenderer(Logger logger, Executor imageExecutor, ImageCache imageCache, DaemonClient daemon,
+                                 DiagramMetrics metrics, Duration renderTimeout,
+                                 File directory, String baseName, String... imageFormats) {
+        this.logger = requireNonNull(logger, "Logger is <null>.");
+        this.imageExecutor = imageExecutor;
+        this.imageCache = imageCache;
+        this.daemon = daemon;
+        this.metrics = metrics;
+        this.renderTimeout = renderTimeout == null || renderTimeout.isZero() || renderTimeout.isNegative()
+                ? null : renderTimeout;
+        this.directory = directory;
+        this.baseName = baseName;
+        this.imageFormats = parseFileFormats(imageFormats);
+    }
+
+    /**
+     * Tries to generate an image file for each configured image format.
+     * The default file extension from the image format is used, together with the specified <code>directory</code>
+     * and <code>baseName</code>.
+     * <p>
+     * If an image executor was specified, the images are generated asynchronously by that executor.
+     *
+     * @param uml The plantuml source of the diagram.
+     * @throws IOException In case of I/O errors while writing to an image file.
+     */
+    @Override
+    public void render(String uml) throws IOException {
+        if (imageFormats.isEmpty()) return;
+        if (imageExecutor == null) generateImages(uml);
+        else imageExecutor.execute(new ImageGeneration(uml));
+    }
+
+    /**
+     * Whether the image files of all configured image formats exist
+     * and are at least as recent as the specified source file.
+     *
+     * @param source The source file of the diagram, e.g. its {@code .puml} file.
+     * @return {@code true} if the images need not be generated again.
+     */
+    public boolean isUpToDate(File source) {
+        for (FileFormat imageFormat : imageFormats) {
+            File imageFile = imageFile(imageFormat);
+            if (!imageFile.isFile() || imageFile.lastModified() < source.lastModified()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Generates the image files, abandoning the generation if it exceeds the render timeout.
+     * <p>
+     * PlantUML and Graphviz cannot reliably be interrupted, so an abandoned generation is left running
+     * on its own daemon thread. It can no longer stall the documentation run.
+     * When it finishes later, its output is discarded instead of replacing the image files.
+     * <p>
+     * To bound the number of threads, the images are skipped with a warning while too many abandoned generations
+     * are still running.
+     *
+     * @param uml The plantuml source of the diagram.
+     * @throws IOException In case of I/O errors writing to an image file.
+     */
+    private void generateImages(String uml) throws IOException {
+        if (renderTimeout == null) {
+            writeImages(uml, new AtomicBoolean(false));
+            return;
+        }
+        final int stillRunning = ABANDONED_GENERATIONS.get();
+        if (stillRunning >= MAX_ABANDONED_GENERATIONS) {
+            if (metrics != null) metrics.record(DiagramMetrics.TIMEOUT, 0L);
+            logger.warn(WARNING_TOO_MANY_ABANDONED_GENERATIONS, new File(directory, baseName + ".puml"), stillRunning);
+            return;
+        }
+        final long start = System.nanoTime();
+        final TimedGeneration timedGeneration = new TimedGeneration(uml);
+        final Future<?> generation = TIMED_GENERATION.submit(timedGeneration);
+        try {
+            generation.get(renderTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException timeout) {
+            timedGeneration.abandon();
+            generation.cancel(true);
+            if (metrics != null) metrics.record(DiagramMetrics.TIMEOUT, System.nanoTime() - start);
+            logger.warn(WARNING_IMAGE_RENDERING_TIMEOUT, new File(directory, baseName + ".puml"), renderTimeout.toMillis() / 1000d);
+        } catch (ExecutionException failure) {
+            if (failure.getCause() instanceof IOException) throw (IOException) failure.getCause();
+            if (failure.getCause() instanceof RuntimeException) throw (RuntimeException) failure.getCause();
+            throw new IllegalStateException(failure.getCause());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            timedGeneration.abandon();
+            generation.cancel(true);
+            throw new InterruptedIOException("Interrupted while generating " + describeImageFiles() + ".");
+        }
+    }
+
+    /**
+     * Generates the image files from the UML source.
+     * <p>
+     * The source is parsed only once; the parsed diagram is reused for every image format.
+     * Images available from the image cache are copied without parsing the source at all.
+     * The remaining images are generated by the rendering daemon if it is available.
+     *
+     * @param uml       The plantuml source of the diagram.
+     * @param abandoned Whether the generation was abandoned, so the generated images must be discarded.
+     * @throws IOException In case of I/O errors writing to an image file.
+     */
+    private void writeImages(String uml, AtomicBoolean abandoned) throws IOException {
+        final String cacheKey = imageCache == null ? null : imageCache.keyOf(uml);
+        final Collection<FileFormat> formats = cacheKey == null ? imageFormats : restoreCachedImages(cacheKey, abandoned);
+        if (formats.isEmpty() || (daemon != null && writeImagesByDaemon(uml, cacheKey, formats, abandoned))) return;
+        if (abandoned.get()) return; // e.g. the daemon did not reply in time, there is no point in generating now
+
+        SourceStringReader parsedDiagram = null;
+        for (FileFormat imageFormat : formats) {
+            final File imageFile = imageFile(imageFormat);
+            final long start = System.nanoTime();
+            logger.info(INFO_GENERATING_FILE, imageFile);
+            if (parsedDiagram == null) parsedDiagram = new SourceStringReader(uml);
+            final Path tempFile = createTempFile(imageFile);
+            try {
+                byte[] image = null;
+                if (cacheKey == null) {
+                    try (OutputStream imageOutput = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+                        parsedDiagram.outputImage(imageOutput, new FileFormatOption(imageFormat));
+                    }
+                } else {
+                    ByteArrayOutputStream imageOutput = new ByteArrayOutputStream();
+                    parsedDiagram.outputImage(imageOutput, new FileFormatOption(imageFormat));
+                    image = imageOutput.toByteArray();
+                    Files.write(tempFile, image);
+                }
+                if (!moveIntoPlace(tempFile, imageFile, abandoned)) return;
+                if (image != null) imageCache.store(cacheKey, imageFormat.getFileSuffix(), image);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            recordMetrics(DiagramMetrics.imagePhase(imageFormat.getFileSuffix()), start, imageFile);
+        }
+    }
+
+    /**
+     * Moves a completely generated image into place, unless the generation was abandoned in the meantime.
+     *
+     * @param tempFile  The completely generated image.
+     * @param imageFile The image file to replace.
+     * @param abandoned The abandonment flag of the generation.
+     * @return Whether the image was moved into place.
+     * @throws IOException In case of I/O errors moving the image.
+     */
+    private static boolean moveIntoPlace(Path tempFile, File imageFile, AtomicBoolean abandoned) throws IOException {
+        synchronized (abandoned) {
+            if (abandoned.get()) return false;
+            AtomicFileWriter.moveAtomically(tempFile, imageFile);
+            return true;
+        }
+    }
+
+    /**
+     * Copies the images that are available from the image cache.
+     * <p>
+     * Like generated images, cached images are copied into a temporary file that is moved into place.
+     *
+     * @param cacheKey  The cache key of the diagram.
+     * @param abandoned Whether the generation was abandoned, so the images must be discarded.
+     * @return The image formats that still have to be generated.
+     * @throws IOException In case of I/O errors copying an image file.
+     */
+    private Collection<FileFormat> restoreCachedImages(String cacheKey, AtomicBoolean abandoned) throws IOException {
+        final Set<FileFormat> missing = EnumSet.noneOf(FileFormat.class);
+        for (FileFormat imageFormat : imageFormats) {
+            final File imageFile = imageFile(imageFormat);
+            final long start = System.nanoTime();
+            final Path tempFile = createTempFile(imageFile);
+            try {
+                if (!imageCache.restore(cacheKey, imageFormat.getFileSuffix(), tempFile.toFile())) {
+                    missing.add(imageFormat);
+                    continue;
+                }
+                if (!moveIntoPlace(tempFile, imageFile, abandoned)) return EnumSet.noneOf(FileFormat.class);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            logger.debug(DEBUG_COPYING_CACHED_IMAGE, imageFile, imageCache);
+            recordMetrics(DiagramMetrics.imagePhase(imageFormat.getFileSuffix()), start, imageFile);
+        }
+        return missing;
+    }
+
+    /**
+     * Creates a new temporary file next to the image file, to move into place once it is complete.
+     *
+     * @param imageFile The image file that will be replaced by the temporary file.
+     * @return The new, empty, temporary file.
+     * @throws IOException if the temporary file could not be created.
+     */
+    private Path createTempFile(File imageFile) throws IOException {
+        return AtomicFileWriter.createTempFile(directory.toPath(), "." + imageFile.getName() + "-", ".tmp");
+    }
+
+    /**
+     * Requests the rendering daemon to generate the images, adding them to the image cache afterwards.
+     * <p>
+     * The daemon returns the images, which are moved into place like images generated in-process.
+     * The daemon is given no more than the render timeout to reply.
+     *
+     * @param uml       The plantuml source of the diagram.
+     * @param cacheKey  The cache key of the diagram (optional, not cached if {@code null}).
+     * @param formats   The image formats to generate.
+     * @param abandoned Whether the generation was abandoned, so the images must be discarded.
+     * @return Whether the daemon generated the images.
+     * @throws IOException In case of I/O errors writing the images or adding them to the cache.
+     */
+    private boolean writeImagesByDaemon(String uml, String cacheKey, Collection<FileFormat> formats,
+                                        AtomicBoolean abandoned) throws IOException {
+        final long start = System.nanoTime();
+        final List<String> formatNames = new ArrayList<>(formats.size());
+        for (FileFormat imageFormat : formats) formatNames.add(imageFormat.name());
+        final List<byte[]> images = daemon.render(formatNames, uml, renderTimeout);
+        if (images == null) return false;
+        if (metrics != null) metrics.record(DiagramMetrics.DAEMON, System.nanoTime() - start);
+        final Iterator<byte[]> image = images.iterator();
+        for (FileFormat imageFormat : formats) {
+            final File imageFile = imageFile(imageFormat);
+            final byte[] bytes = image.next();
+            logger.info(INFO_GENERATING_FILE, imageFile);
+            final Path tempFile = createTempFile(imageFile);
+            try {
+                Files.write(tempFile, bytes);
+                if (!moveIntoPlace(tempFile, imageFile, abandoned)) return true;
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            if (cacheKey != null) imageCache.store(cacheKey, imageFormat.getFileSuffix(), bytes);
+            if (metrics != null) metrics.bytesWritten(bytes.length);
+        }
+        return true;
+    }
+
+    private File imageFile(FileFormat imageFormat) {
+        return new File(directory, baseName + imageFormat.getFileSuffix());
+    }
+
+    private void recordMetrics(String phase, long start, File imageFile) {
+        if (metrics != null) {
+            metrics.record(phase, System.nanoTime() - start);
+            metrics.bytesWritten(imageFile.length());
+        }
+    }
+
+    /**
+     * Converts image format names to a set of {@link FileFormat} instances.
+     * Names are used to avoid any runtime dependency from calling code on the implementation to any
+     * <code>plantuml</code> packages.
+     *
+     * @param imageFormatNames The names of the image formats to be generated
+     *                         (e.g. <code>"PNG"</code>, <code>"SVG"</code>, etc).
+     * @return The parsed <code>FileFormat</code> instances.
+     */
+    private Set<FileFormat> parseFileFormats(String... imageFormatNames) {
+        Set<FileFormat> fileFormats = EnumSet.noneOf(FileFormat.class);
+        if (imageFormatNames != null) for (String fileFormatName : imageFormatNames) {
+            FileFormat fileFormat = fileFormatFromName(fileFormatName);
+            if (fileFormat != null) fileFormats.add(fileFormat);
+        }
+        logger.debug(DEBUG_CONFIGURED_IMAGE_FORMATS, fileFormats);
+        return fileFormats;
+    }
+
+    /**
+     * Converts the name of the fileformat into a {@link FileFormat} object.
+     * Returns <code>null</code> if it cannot find the corresponding file format.
+     *
+     * @param fileFormatName The name of the fileformat.
+     * @return The found <code>FileFormat</code> instance or <code>null</code> if the name was not recognized.
+     */
+    private FileFormat fileFormatFromName(String fileFormatName) {
+        fileFormatName = trimToEmpty(fileFormatName);
+        if (fileFormatName.startsWith(".")) fileFormatName = fileFormatName.substring(1);
+        for (FileFormat fileFormat : FileFormat.values()) {
+            if (fileFormatName.equalsIgnoreCase(fileFormat.name())) return fileFormat;
+        }
+        logger.warn(WARNING_UNRECOGNIZED_IMAGE_FORMAT, fileFormatName);
+        return null;
+    }
+
+    private static String trimToEmpty(String value) {
+        return value == null ? "" : value.trim();
+    }
+
+    /**
+     * @return Description of the image file(s) that will be generated.
+     */
+    String describeImageFiles() {
+        StringBuilder result = new StringBuilder();
+        if (directory != null) {
+            result.append(directory.getPath()).append(File.separator);
+        }
+        result.append(baseName);
+        if (imageFormats.size() == 1) {
+            result.append(imageFormats.iterator().next().getFileSuffix());
+        } else {
+            result.append('.').append(imageFormats);
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return String representation providing information about which image file(s) will be generated.
+     */
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + '{' + describeImageFiles() + '}';
+    }
+
+    /**
+     * Image generation with a render timeout, counting abandoned generations for as long as they keep running.
+     */
+    private final class TimedGeneration implements Callable<Void> {
+        private final String uml;
+        private final AtomicBoolean abandoned = new AtomicBoolean(false);
+        private boolean started, finished; // guarded by abandoned
+
+        private TimedGeneration(String uml) {
+            this.uml = uml;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            synchronized (abandoned) {
+                if (abandoned.get()) return null;
+                started = true;
+            }
+            try {
+                writeImages(uml, abandoned);
+            } finally {
+                synchronized (abandoned) {
+                    finished = true;
+                    if (abandoned.get()) ABANDONED_GENERATIONS.decrementAndGet();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Marks the generation as abandoned; images that are not yet in place will be discarded.
+         */
+        private void abandon() {
+            synchronized (abandoned) {
+                if (!abandoned.getAndSet(true) && started && !finished) ABANDONED_GENERATIONS.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Image generation task for the written UML, describing itself as the images it generates.
+     */
+    private final class ImageGeneration implements Runnable {
+        private final String uml;
+
+        private ImageGeneration(String uml) {
+            this.uml = uml;
+        }
+
+        @Override
+        public void run() {
+            try {
+                generateImages(uml);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return PlantumlImageRenderer.this.toString();
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.plantuml;
+
+import net.sourceforge.plantuml.version.Version;
+import nl.talsmasoftware.umldoclet.logging.Logger;
+import nl.talsmasoftware.umldoclet.metrics.DiagramMetrics;
+import nl.talsmasoftware.umldoclet.rendering.ImageRenderer;
+import nl.talsmasoftware.umldoclet.rendering.ImageRendererFactory;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.Executor;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Creates {@link PlantumlImageRenderer} instances for the configured image formats.
+ *
+ * @author Sjoerd Talsma
+ */
+public final class PlantumlImageRendererFactory implements ImageRendererFactory {
+
+    private final Logger logger;
+    private final Executor imageExecutor;
+    private final ImageCache imageCache;
+    private final DaemonClient daemon;
+    private final Duration renderTimeout;
+    private final String[] imageFormats;
+
+    /**
+     * Constructor. Creates a factory for renderers sharing the same rendering infrastructure.
+     *
+     * @param logger        The logger.
+     * @param imageExecutor The executor to generate the images with
+     *                      (optional, images are generated while rendering if {@code null}).
+     * @param imageCache    The cache of previously rendered images (optional, no caching if {@code null}).
+     * @param daemon        The client of the rendering daemon (optional, images are generated in-process if {@code null}).
+     * @param renderTimeout The maximum time to generate all images of a diagram (optional, no time limit if {@code null}).
+     * @param imageFormats  The names of the image formats to generate.
+     */
+    public PlantumlImageRendererFactory(Logger logger, Executor imageExecutor, ImageCache imageCache,
+                                        DaemonClient daemon, Duration renderTimeout, Collection<String> imageFormats) {
+        this.logger = requireNonNull(logger, "Logger is <null>.");
+        this.imageExecutor = imageExecutor;
+        this.imageCache = imageCache;
+        this.daemon = daemon;
+        this.renderTimeout = renderTimeout;
+        this.imageFormats = requireNonNull(imageFormats, "Image formats are <null>.").toArray(new String[0]);
+    }
+
+    @Override
+    public String libraryVersion() {
+        return Version.versionString();
+    }
+
+    @Override
+    public ImageRenderer create(File directory, String baseName, DiagramMetrics metrics) {
+        return new PlantumlImageRenderer(logger, imageExecutor, imageCache, daemon, metrics, renderTimeout,
+                directory, baseName, imageFormats);
+    }
+
+}
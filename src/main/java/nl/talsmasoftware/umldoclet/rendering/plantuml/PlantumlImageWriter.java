@@ -15,37 +15,25 @@
  */
 package nl.talsmasoftware.umldoclet.rendering.plantuml;
 
-import net.sourceforge.plantuml.FileFormat;
-import net.sourceforge.plantuml.FileFormatOption;
-import net.sourceforge.plantuml.SourceStringReader;
 import nl.talsmasoftware.umldoclet.logging.Logger;
 import nl.talsmasoftware.umldoclet.rendering.writers.StringBufferingWriter;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.Writer;
-import java.util.Collection;
-import java.util.EnumSet;
-import java.util.Set;
-
-import static java.util.Objects.requireNonNull;
-import static nl.talsmasoftware.umldoclet.logging.Message.*;
 
 /**
  * Writer that delegates to a regular writer for the UML itself, but when finished (i.e. when close is called), also
  * attempt to generate image files using the PlantUML library.
+ * <p>
+ * If the complete diagram source is already available,
+ * the {@link PlantumlImageRenderer} can be used directly to avoid buffering a copy of it.
  *
  * @author Sjoerd Talsma
  */
 public class PlantumlImageWriter extends StringBufferingWriter {
 
-    private final Logger logger;
-    private final File directory;
-    private final String baseName;
-    private final Collection<FileFormat> imageFormats;
+    private final PlantumlImageRenderer imageRenderer;
 
     /**
      * Constructor. Creates a new writer that delegates all writes to the specified writer,
@@ -63,10 +51,7 @@ public class PlantumlImageWriter extends StringBufferingWriter {
      */
     public PlantumlImageWriter(Writer delegate, Logger logger, File directory, String baseName, String... imageFormats) {
         super(delegate);
-        this.logger = requireNonNull(logger, "Logger is <null>.");
-        this.directory = directory;
-        this.baseName = baseName;
-        this.imageFormats = parseFileFormats(imageFormats);
+        this.imageRenderer = new PlantumlImageRenderer(logger, null, null, directory, baseName, imageFormats);
     }
 
     /**
@@ -75,57 +60,12 @@ public class PlantumlImageWriter extends StringBufferingWriter {
      * and <code>baseName</code>.
      *
      * @throws IOException In case of I/O errors while closing the delegate writer or writing to an image file.
+     * @see PlantumlImageRenderer#render(String)
      */
     @Override
     public void close() throws IOException {
         super.close();
-        for (FileFormat imageFormat : imageFormats) {
-            final File imageFile = new File(directory, baseName + imageFormat.getFileSuffix());
-            logger.info(INFO_GENERATING_FILE, imageFile);
-            try (OutputStream imageOutput = new BufferedOutputStream(new FileOutputStream(imageFile))) {
-                new SourceStringReader(getBuffer().toString()).outputImage(imageOutput, new FileFormatOption(imageFormat));
-            }
-        }
-    }
-
-    /**
-     * Converts image format names to a set of {@link FileFormat} instances.
-     * Names are used to avoid any runtime dependency from calling code on the implementation to any
-     * <code>plantuml</code> packages.
-     *
-     * @param imageFormatNames The names of the image formats to be generated
-     *                         (e.g. <code>"PNG"</code>, <code>"SVG"</code>, etc).
-     * @return The parsed <code>FileFormat</code> instances.
-     */
-    private Set<FileFormat> parseFileFormats(String... imageFormatNames) {
-        Set<FileFormat> fileFormats = EnumSet.noneOf(FileFormat.class);
-        if (imageFormatNames != null) for (String fileFormatName : imageFormatNames) {
-            FileFormat fileFormat = fileFormatFromName(fileFormatName);
-            if (fileFormat != null) fileFormats.add(fileFormat);
-        }
-        logger.debug(DEBUG_CONFIGURED_IMAGE_FORMATS, fileFormats);
-        return fileFormats;
-    }
-
-    /**
-     * Converts the name of the fileformat into a {@link FileFormat} object.
-     * Returns <code>null</code> if it cannot find the corresponding file format.
-     *
-     * @param fileFormatName The name of the fileformat.
-     * @return The found <code>FileFormat</code> instance or <code>null</code> if the name was not recognized.
-     */
-    private FileFormat fileFormatFromName(String fileFormatName) {
-        fileFormatName = trimToEmpty(fileFormatName);
-        if (fileFormatName.startsWith(".")) fileFormatName = fileFormatName.substring(1);
-        for (FileFormat fileFormat : FileFormat.values()) {
-            if (fileFormatName.equalsIgnoreCase(fileFormat.name())) return fileFormat;
-        }
-        logger.warn(WARNING_UNRECOGNIZED_IMAGE_FORMAT, fileFormatName);
-        return null;
-    }
-
-    private static String trimToEmpty(String value) {
-        return value == null ? "" : value.trim();
+        imageRenderer.render(getBuffer().toString());
     }
 
     /**
@@ -133,17 +73,7 @@ public class PlantumlImageWriter extends StringBufferingWriter {
      */
     @Override
     public String toString() {
-        StringBuilder result = new StringBuilder(getClass().getSimpleName()).append('{');
-        if (directory != null) {
-            result.append(directory.getPath()).append(File.separator);
-        }
-        result.append(baseName);
-        if (imageFormats.size() == 1) {
-            result.append(imageFormats.iterator().next().getFileSuffix());
-        } else {
-            result.append('.').append(imageFormats);
-        }
-        return result.append('}').toString();
+        return getClass().getSimpleName() + '{' + imageRenderer.describeImageFiles() + '}';
     }
 
 }
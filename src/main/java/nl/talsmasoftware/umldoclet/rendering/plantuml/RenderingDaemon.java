@@ -0,0 +1,247 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.plantuml;
+
+import net.sourceforge.plantuml.FileFormat;
+import net.sourceforge.plantuml.FileFormatOption;
+import net.sourceforge.plantuml.SourceStringReader;
+import nl.talsmasoftware.umldoclet.logging.ConsoleLogger;
+import nl.talsmasoftware.umldoclet.logging.Logger;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.DaemonProtocol.Endpoint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static nl.talsmasoftware.umldoclet.logging.Message.ERROR_COULDNT_RENDER_UML;
+import static nl.talsmasoftware.umldoclet.logging.Message.INFO_DAEMON_STARTED;
+import static nl.talsmasoftware.umldoclet.rendering.plantuml.DaemonProtocol.*;
+
+/**
+ * Long-lived local process generating images on behalf of javadoc runs,
+ * so PlantUML is loaded, initialized and JIT-compiled only once for many javadoc invocations.
+ * <p>
+ * The daemon only listens on the loopback address. It publishes its port, a random secret token and its version
+ * in its daemon file, readable only by the current user; requests without the token are refused.
+ * Clients only use a daemon with the same doclet and PlantUML versions as their own.
+ * The daemon returns the generated images to the client instead of writing image files,
+ * so a client that stopped waiting for a diagram never has its images replaced by a late reply.
+ * The daemon stops when it has been idle for the configured time and removes its daemon file.
+ * <p>
+ * Usage: {@code java -cp umldoclet.jar nl.talsmasoftware.umldoclet.rendering.plantuml.RenderingDaemon
+ * [-verbose] [-threads <n>] [-idleMinutes <n>] [-daemonFile <file>]}
+ *
+ * @author Sjoerd Talsma
+ * @see DaemonClient
+ */
+public final class RenderingDaemon implements Closeable {
+    private static final int READ_TIMEOUT_MILLIS = 60_000;
+
+    private final Logger logger;
+    private final File daemonFile;
+    private final Duration idleTimeout;
+    private final ExecutorService workers;
+    private final String token;
+    private final ServerSocket serverSocket;
+    private volatile long lastRequest = System.nanoTime();
+
+    /**
+     * Starts a new daemon, listening on a free local port.
+     *
+     * @param logger      The logger.
+     * @param daemonFile  The file to publish the port and token of the daemon in.
+     * @param threads     The number of diagrams to render concurrently.
+     * @param idleTimeout The idle time after which the daemon stops (optional, never stops if {@code null}).
+     * @throws IOException if the daemon could not listen on a local port or publish its daemon file.
+     */
+    public RenderingDaemon(Logger logger, File daemonFile, int threads, Duration idleTimeout) throws IOException {
+        this.logger = requireNonNull(logger, "Logger is <null>.");
+        this.daemonFile = requireNonNull(daemonFile, "Daemon file is <null>.");
+        this.idleTimeout = idleTimeout;
+        final AtomicInteger threadCount = new AtomicInteger(0);
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "umldoclet-daemon-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        byte[] secret = new byte[16];
+        new SecureRandom().nextBytes(secret);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : secret) hex.append(String.format("%02x", b));
+        this.token = hex.toString();
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        warmUp();
+        new Endpoint(serverSocket.getLocalPort(), token, version()).write(daemonFile);
+        logger.info(INFO_DAEMON_STARTED, serverSocket.getLocalPort(), daemonFile);
+
+        Thread acceptor = new Thread(this::acceptConnections, "umldoclet-daemon-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Runs PlantUML once, so its static initialization is done before the first request arrives.
+     */
+    private static void warmUp() throws IOException {
+        new SourceStringReader("@startuml\nversion\n@enduml")
+                .outputImage(new ByteArrayOutputStream(), new FileFormatOption(FileFormat.SVG));
+    }
+
+    /**
+     * @return Whether the daemon is still accepting requests.
+     */
+    public boolean isRunning() {
+        return !serverSocket.isClosed();
+    }
+
+    private void acceptConnections() {
+        while (isRunning()) {
+            try {
+                Socket connection = serverSocket.accept();
+                lastRequest = System.nanoTime();
+                workers.execute(() -> handle(connection));
+            } catch (SocketException closed) {
+                break;
+            } catch (IOException | RuntimeException acceptException) {
+                logger.error(ERROR_COULDNT_RENDER_UML, daemonFile, acceptException);
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket connection = socket) {
+            connection.setSoTimeout(READ_TIMEOUT_MILLIS);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            final List<byte[]> images = new ArrayList<>();
+            String failure = null;
+            try {
+                failure = process(input, images);
+            } catch (IOException | RuntimeException requestException) {
+                failure = String.valueOf(requestException);
+            }
+            output.writeBoolean(failure == null);
+            writeString(output, failure == null ? "" : failure);
+            if (failure == null) {
+                output.writeInt(images.size());
+                for (byte[] image : images) writeBytes(output, image);
+            }
+            output.flush();
+        } catch (IOException | RuntimeException connectionException) {
+            logger.error(ERROR_COULDNT_RENDER_UML, daemonFile, connectionException);
+        } finally {
+            lastRequest = System.nanoTime();
+        }
+    }
+
+    /**
+     * Processes a single request.
+     *
+     * @param input  The request.
+     * @param images The list to add the generated images to, in the order of the requested formats.
+     * @return The reason the request failed, or {@code null} if it succeeded.
+     * @throws IOException In case of I/O errors reading the request or generating the images.
+     */
+    private String process(DataInputStream input, List<byte[]> images) throws IOException {
+        if (!MessageDigest.isEqual(token.getBytes(UTF_8), readString(input, MAX_NAME_LENGTH).getBytes(UTF_8))) {
+            return "Invalid daemon token.";
+        }
+        final String command = readString(input, MAX_NAME_LENGTH);
+        if (PING.equals(command)) return null;
+        else if (RENDER.equals(command)) {
+            final String[] formats = readString(input, MAX_NAME_LENGTH).split(",");
+            final String uml = readString(input, MAX_UML_LENGTH);
+            final SourceStringReader diagram = new SourceStringReader(uml);
+            for (String format : formats) {
+                final ByteArrayOutputStream image = new ByteArrayOutputStream();
+                diagram.outputImage(image, new FileFormatOption(FileFormat.valueOf(format.trim().toUpperCase(Locale.ROOT))));
+                images.add(image.toByteArray());
+            }
+            return null;
+        }
+        return "Unknown command: \"" + command + "\".";
+    }
+
+    /**
+     * Blocks until the daemon is closed, closing it when it has been idle for too long.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void awaitClose() throws InterruptedException {
+        while (isRunning()) {
+            TimeUnit.SECONDS.sleep(1);
+            if (idleTimeout != null && System.nanoTime() - lastRequest > idleTimeout.toNanos()) close();
+        }
+    }
+
+    /**
+     * Stops accepting requests and removes the daemon file, unless it was already taken over by another daemon.
+     */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException ignore) {
+            // the daemon is stopping anyway
+        }
+        workers.shutdown();
+        Endpoint published = Endpoint.read(daemonFile);
+        if (published != null && token.equals(published.token) && !daemonFile.delete()) daemonFile.deleteOnExit();
+    }
+
+    public static void main(String... args) throws IOException, InterruptedException {
+        boolean verbose = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Duration idleTimeout = Duration.ofMinutes(30);
+        File daemonFile = DaemonClient.defaultDaemonFile();
+        for (int i = 0; i < args.length; i++) {
+            if ("-verbose".equals(args[i])) verbose = true;
+            else if ("-threads".equals(args[i])) threads = Integer.parseInt(args[++i].trim());
+            else if ("-idleMinutes".equals(args[i])) idleTimeout = Duration.ofMinutes(Long.parseLong(args[++i].trim()));
+            else if ("-daemonFile".equals(args[i])) daemonFile = new File(args[++i]);
+            else throw new IllegalArgumentException("Unrecognized argument: \"" + args[i] + "\".");
+        }
+
+        final Logger logger = new ConsoleLogger(verbose);
+        if (new DaemonClient(logger, daemonFile).ping()) return; // another daemon is already running
+        try (RenderingDaemon daemon = new RenderingDaemon(logger, daemonFile, threads,
+                idleTimeout.isZero() ? null : idleTimeout)) {
+            daemon.awaitClose();
+        }
+    }
+
+}
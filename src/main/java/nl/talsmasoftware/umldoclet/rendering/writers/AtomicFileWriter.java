@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.writers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Buffered writer to a file using an explicit character encoding,
+ * that only replaces the file when the writer is closed successfully.
+ * <p>
+ * The characters are written to a temporary file in the same directory,
+ * which is atomically renamed to the target file on {@link #close()}.
+ * The temporary file is created with the default permissions for new files (subject to the umask),
+ * so the target file is readable by the same users as any other generated file.
+ * Readers of the file will therefore either see the previous or the complete new content, never a partial file.
+ * If any write failed, the temporary file is discarded and the target file is left untouched.
+ *
+ * @author Sjoerd Talsma
+ */
+public class AtomicFileWriter extends Writer {
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final File file;
+    private final Path tempFile;
+    private final Writer delegate;
+    private boolean failed = false, closed = false;
+
+    /**
+     * Constructor. Creates a new writer that replaces the specified file when closed.
+     *
+     * @param file    The file to write.
+     * @param charset The character encoding of the file.
+     * @throws IOException if the temporary file could not be created.
+     */
+    public AtomicFileWriter(File file, Charset charset) throws IOException {
+        this.file = requireNonNull(file, "File to write is <null>.");
+        this.tempFile = createTempFile(file);
+        this.delegate = Files.newBufferedWriter(tempFile, requireNonNull(charset, "Character encoding is <null>."));
+    }
+
+    /**
+     * Atomically replaces the file with the specified content, encoding and writing it in a single operation.
+     *
+     * @param file    The file to write.
+     * @param content The complete content of the file.
+     * @param charset The character encoding of the file.
+     * @return The number of bytes written.
+     * @throws IOException if the file could not be written.
+     */
+    public static int write(File file, String content, Charset charset) throws IOException {
+        final byte[] bytes = requireNonNull(content, "Content is <null>.").getBytes(charset);
+        final Path tempFile = createTempFile(file);
+        try {
+            Files.write(tempFile, bytes);
+            moveAtomically(tempFile, file);
+            return bytes.length;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static Path createTempFile(File file) throws IOException {
+        final File directory = file.getAbsoluteFile().getParentFile();
+        return createTempFile(directory.toPath(), "." + file.getName() + "-", ".tmp");
+    }
+
+    /**
+     * Creates a new empty file with a unique name in the specified directory.
+     * <p>
+     * Unlike {@link Files#createTempFile(Path, String, String, java.nio.file.attribute.FileAttribute[])},
+     * the file is created with the default permissions for new files instead of being accessible by its owner only.
+     *
+     * @param directory The directory to create the file in.
+     * @param prefix    The prefix of the file name.
+     * @param suffix    The suffix of the file name.
+     * @return The new empty file.
+     * @throws IOException if the file could not be created.
+     */
+    public static Path createTempFile(Path directory, String prefix, String suffix) throws IOException {
+        while (true) {
+            String unique = Long.toUnsignedString(RANDOM.nextLong(), Character.MAX_RADIX);
+            try {
+                return Files.createFile(directory.resolve(prefix + unique + suffix));
+            } catch (FileAlreadyExistsException exists) {
+                // try again with another name
+            }
+        }
+    }
+
+    /**
+     * Moves a completely written file to its target, atomically if the file system supports it.
+     *
+     * @param source The completely written (temporary) file.
+     * @param target The file to replace.
+     * @throws IOException if the file could not be moved.
+     */
+    public static void moveAtomically(Path source, File target) throws IOException {
+        try {
+            Files.move(source, target.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(source, target.toPath(), REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        try {
+            delegate.write(cbuf, off, len);
+        } catch (IOException | RuntimeException writeException) {
+            failed = true;
+            throw writeException;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        try {
+            delegate.write(str, off, len);
+        } catch (IOException | RuntimeException writeException) {
+            failed = true;
+            throw writeException;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    /**
+     * Closes the temporary file and moves it to the target file, unless a write operation failed.
+     *
+     * @throws IOException if the temporary file could not be closed or moved to the target file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            delegate.close();
+            if (!failed) moveAtomically(tempFile, file);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * @return The name of this class plus the file being written.
+     */
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + '{' + file + '}';
+    }
+
+}
@@ -59,15 +59,16 @@ public class DelegatingWriter extends Writer {
      */
     @Override
     public void write(char[] cbuf, int off, int len) throws IOException {
-        List<Exception> writeExceptions = new ArrayList<>(delegates.size());
+        List<Exception> writeExceptions = null;
         for (Writer delegate : delegates) {
             try {
                 delegate.write(cbuf, off, len);
             } catch (IOException | RuntimeException writeException) {
+                if (writeExceptions == null) writeExceptions = new ArrayList<>(delegates.size());
                 writeExceptions.add(writeException);
             }
         }
-        if (!writeExceptions.isEmpty()) {
+        if (writeExceptions != null) {
             throw mergeExceptions("writing", writeExceptions);
         }
     }
@@ -79,15 +80,16 @@ public class DelegatingWriter extends Writer {
      */
     @Override
     public void flush() throws IOException {
-        List<Exception> flushExceptions = new ArrayList<>(delegates.size());
+        List<Exception> flushExceptions = null;
         for (Writer delegate : delegates) {
             try {
                 delegate.flush();
             } catch (IOException | RuntimeException flushException) {
+                if (flushExceptions == null) flushExceptions = new ArrayList<>(delegates.size());
                 flushExceptions.add(flushException);
             }
         }
-        if (!flushExceptions.isEmpty()) {
+        if (flushExceptions != null) {
             throw mergeExceptions("flushing", flushExceptions);
         }
     }
@@ -100,15 +102,16 @@ public class DelegatingWriter extends Writer {
      */
     @Override
     public void close() throws IOException {
-        List<Exception> closeExceptions = new ArrayList<>(delegates.size());
+        List<Exception> closeExceptions = null;
         for (Writer delegate : delegates) {
             try {
                 delegate.close();
             } catch (IOException | RuntimeException closeException) {
+                if (closeExceptions == null) closeExceptions = new ArrayList<>(delegates.size());
                 closeExceptions.add(closeException);
             }
         }
-        if (!closeExceptions.isEmpty()) {
+        if (closeExceptions != null) {
             throw mergeExceptions("closing", closeExceptions);
         }
     }
@@ -72,7 +72,22 @@ public class Namespace extends UMLPart implements Comparable<Namespace> {
     }
 
     public boolean contains(TypeName typeName) {
-        return typeName != null && typeName.qualified.startsWith(this.name + ".");
+        return typeName != null && contains(typeName.qualified);
+    }
+
+    /**
+     * Tests whether the qualified name belongs to this namespace or one of its sub-namespaces.
+     * <p>
+     * This is a plain prefix check followed by the {@code '.'} separator,
+     * so no {@code name + "."} prefix has to be created for every test.
+     *
+     * @param qualifiedName The qualified name to test.
+     * @return {@code true} if the qualified name starts with the name of this namespace followed by a {@code '.'}.
+     */
+    public boolean contains(String qualifiedName) {
+        final int length = name.length();
+        return qualifiedName != null && qualifiedName.length() > length
+                && qualifiedName.charAt(length) == '.' && qualifiedName.startsWith(name);
     }
 
     @Override
@@ -200,7 +200,7 @@ public class Reference extends UMLPart implements NameSpaceAware {
 
         public String toString(Namespace namespace) {
             String name = qualifiedName;
-            if (namespace != null && name.startsWith(namespace.name + ".")) {
+            if (namespace != null && namespace.contains(name)) {
                 name = name.substring(namespace.name.length() + 1);
                 if (name.indexOf('.') > 0) name = qualifiedName;
             }
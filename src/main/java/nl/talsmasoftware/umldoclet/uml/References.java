@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.uml;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Collection of unique references, in the order they were first added.
+ * <p>
+ * References are indexed by their {@link Reference#canonical() canonical} form.
+ * Adding a reference that is already contained merges its notes into the existing reference,
+ * which keeps its original position.
+ *
+ * @author Sjoerd Talsma
+ */
+public class References extends AbstractCollection<Reference> {
+
+    private final Map<Reference, Reference> references = new LinkedHashMap<>();
+
+    /**
+     * Adds the reference, or merges its notes into an equal reference that was already added.
+     *
+     * @param reference The reference to add.
+     * @return {@code true} if this collection changed as a result of the call.
+     */
+    @Override
+    public boolean add(Reference reference) {
+        final Reference canonical = requireNonNull(reference, "Reference is <null>.").canonical();
+        final Reference existing = references.get(canonical);
+        if (existing == null) {
+            references.put(canonical, reference);
+            return true;
+        }
+        Reference merged = existing;
+        for (String note : reference.notes) merged = merged.addNote(note);
+        if (merged == existing) return false;
+        references.put(canonical, merged);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object other) {
+        return other instanceof Reference && references.containsKey(((Reference) other).canonical());
+    }
+
+    @Override
+    public boolean remove(Object other) {
+        return other instanceof Reference && references.remove(((Reference) other).canonical()) != null;
+    }
+
+    @Override
+    public Iterator<Reference> iterator() {
+        return references.values().iterator();
+    }
+
+    @Override
+    public int size() {
+        return references.size();
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.uml;
+
+import nl.talsmasoftware.umldoclet.rendering.indent.IndentingPrintWriter;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * UML part of which the plantuml text was already rendered.
+ * <p>
+ * Replacing a part by its rendered text releases the model of the part (and everything it refers to)
+ * while the rest of the diagram is still being built.
+ * The text is rendered without indentation; it is indented when written to its final output.
+ *
+ * @author Sjoerd Talsma
+ */
+public class RenderedPart extends UMLPart {
+
+    private final String text;
+    final int elements;
+
+    private RenderedPart(UMLPart parent, String text, int elements) {
+        super(parent);
+        this.text = requireNonNull(text, "Rendered text is <null>.");
+        this.elements = elements;
+    }
+
+    /**
+     * Renders the type as it would be written within the namespace, keeping only the resulting text.
+     *
+     * @param namespace The namespace the type is written in.
+     * @param type      The type to render.
+     * @return The rendered type.
+     */
+    public static RenderedPart of(Namespace namespace, Type type) {
+        StringBuilder text = new StringBuilder();
+        type.writeTo(IndentingPrintWriter.wrap(text, namespace.getConfiguration().getIndentation()), namespace);
+        return new RenderedPart(namespace, text.toString(), 1 + UMLDiagram.countElements(type));
+    }
+
+    @Override
+    public <IPW extends IndentingPrintWriter> IPW writeTo(IPW output) {
+        output.append(text);
+        return output;
+    }
+
+}
@@ -19,7 +19,6 @@ import nl.talsmasoftware.umldoclet.uml.configuration.TypeDisplay;
 
 import java.io.IOException;
 
-import static java.util.Comparator.comparing;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -57,7 +56,7 @@ public class TypeName implements Comparable<TypeName> {
         if (display == null) display = TypeDisplay.SIMPLE;
         if (!TypeDisplay.NONE.equals(display)) try {
 
-            if (namespace != null && this.qualified.startsWith(namespace.name + ".")) {
+            if (namespace != null && namespace.contains(this.qualified)) {
                 String name = this.qualified.substring(namespace.name.length() + 1);
                 if (name.indexOf('.') > 0) name = this.qualified;
                 output.append(name);
@@ -90,9 +89,9 @@ public class TypeName implements Comparable<TypeName> {
     @Override
     public int compareTo(TypeName other) {
         requireNonNull(other, "Cannot compare with type name <null>.");
-        return comparing((TypeName type) -> type.qualified.toLowerCase())
-                .thenComparing(type -> type.qualified)
-                .compare(this, other);
+        if (qualified.equals(other.qualified)) return 0;
+        int delta = qualified.toLowerCase().compareTo(other.qualified.toLowerCase());
+        return delta != 0 ? delta : qualified.compareTo(other.qualified);
     }
 
     @Override
@@ -102,7 +101,7 @@ public class TypeName implements Comparable<TypeName> {
 
     @Override
     public boolean equals(Object other) {
-        return this == other || (other instanceof TypeName && this.compareTo((TypeName) other) == 0);
+        return this == other || (other instanceof TypeName && qualified.equals(((TypeName) other).qualified));
     }
 
     @Override
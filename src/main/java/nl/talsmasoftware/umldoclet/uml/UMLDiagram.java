@@ -16,20 +16,25 @@
 package nl.talsmasoftware.umldoclet.uml;
 
 import nl.talsmasoftware.umldoclet.logging.Logger;
-import nl.talsmasoftware.umldoclet.rendering.indent.Indentation;
+import nl.talsmasoftware.umldoclet.metrics.DiagramMetrics;
+import nl.talsmasoftware.umldoclet.rendering.DeferredRendering;
+import nl.talsmasoftware.umldoclet.rendering.ImageRendererFactory;
 import nl.talsmasoftware.umldoclet.rendering.indent.IndentingPrintWriter;
-import nl.talsmasoftware.umldoclet.rendering.plantuml.PlantumlImageWriter;
+import nl.talsmasoftware.umldoclet.rendering.writers.AtomicFileWriter;
 import nl.talsmasoftware.umldoclet.uml.configuration.Configuration;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.util.Objects.requireNonNull;
+import static nl.talsmasoftware.umldoclet.logging.Message.DEBUG_SKIPPING_UNCHANGED_FILE;
 import static nl.talsmasoftware.umldoclet.logging.Message.ERROR_COULDNT_RENDER_UML;
 import static nl.talsmasoftware.umldoclet.logging.Message.INFO_GENERATING_FILE;
 
@@ -40,9 +45,11 @@ import static nl.talsmasoftware.umldoclet.logging.Message.INFO_GENERATING_FILE;
  * The <code>{@literal @}startuml</code> and <code>{@literal @}enduml</code> lines with the children within.
  * Subclasses of {@code UMLDiagram} are responsible for adding appropriate child renderers.
  * <p>
- * The diagram is rendered to a {@code .puml} output file.
- * Writing happens to the {@link PlantumlImageWriter} which caches the written plantuml file and
- * will generate one or more corresponding images from the diagram when the writer is closed.
+ * The diagram is rendered to a {@code .puml} output file, that is replaced atomically once it is completely written.
+ * The rendered text is built only once; the same text is written to the file
+ * and passed to an {@link nl.talsmasoftware.umldoclet.rendering.ImageRenderer ImageRenderer}
+ * to generate one or more corresponding images from the diagram.
+ * Image formats that are {@link Configuration#getDeferredImages() deferred} are only listed in a manifest.
  *
  * @author Sjoerd Talsma
  */
@@ -50,6 +57,7 @@ public abstract class UMLDiagram extends UMLPart {
 
     final Configuration config;
     protected final List<UMLPart> children = new ArrayList<>();
+    private final Map<String, Namespace> namespaces = new HashMap<>();
 
     protected UMLDiagram(Configuration config) {
         super(null);
@@ -61,6 +69,19 @@ public abstract class UMLDiagram extends UMLPart {
         return this;
     }
 
+    /**
+     * Returns the namespace with the specified name within this diagram.
+     * <p>
+     * Each namespace is created only once per diagram,
+     * so all types of the same package in this diagram share their namespace.
+     *
+     * @param name The qualified name of the namespace.
+     * @return The namespace of this diagram with the specified name.
+     */
+    public Namespace namespace(String name) {
+        return namespaces.computeIfAbsent(name, n -> new Namespace(this, n));
+    }
+
     /**
      * This method determines the physical file where the plantuml diagram should be rendered.
      *
@@ -88,15 +109,45 @@ public abstract class UMLDiagram extends UMLPart {
 
     /**
      * Renders this diagram to a designated {@link #pumlFile() .puml file}.
+     * <p>
+     * In {@link Configuration#isIncremental() incremental mode}, neither the {@code .puml} file
+     * nor its images are written if the file already contains the exact same diagram
+     * and all images are at least as recent.
+     * <p>
+     * In {@link Configuration#isStreaming() streaming mode}, the children of the diagram are released
+     * as soon as the text is rendered. A streaming diagram can therefore only be rendered once.
      *
      * @return Whether the rendering succeeded.
      */
     public boolean render() {
         final File pumlFile = pumlFile();
         final Logger logger = getConfiguration().getLogger();
-        try (IndentingPrintWriter writer = createPlantumlWriter(pumlFile)) {
+        try {
+            final DiagramMetrics metrics = getMetrics();
+            long start = System.nanoTime();
+            final String uml = toString();
+            metrics.record(DiagramMetrics.RENDER, System.nanoTime() - start);
+            metrics.elements(countElements(this));
+            if (getConfiguration().isStreaming()) { // release the model, only the text is needed
+                children.clear();
+                namespaces.clear();
+            }
+
+            final DeferredRendering deferredImages = getConfiguration().getDeferredImages();
+            if (deferredImages != null) deferredImages.add(pumlFile);
+
+            start = System.nanoTime();
+            if (getConfiguration().isIncremental() && isUpToDate(pumlFile, uml)) {
+                metrics.record(DiagramMetrics.WRITE, System.nanoTime() - start);
+                logger.debug(DEBUG_SKIPPING_UNCHANGED_FILE, pumlFile);
+                return true;
+            }
             logger.info(INFO_GENERATING_FILE, pumlFile);
-            this.writeTo(IndentingPrintWriter.wrap(writer, getConfiguration().getIndentation()));
+            metrics.bytesWritten(AtomicFileWriter.write(ensureParentDir(pumlFile), uml, getConfiguration().getUmlCharset()));
+            metrics.record(DiagramMetrics.WRITE, System.nanoTime() - start);
+
+            final ImageRendererFactory imageRenderers = getConfiguration().getImageRendererFactory();
+            if (imageRenderers != null) imageRenderers.create(pumlFile.getParentFile(), baseName(pumlFile), metrics).render(uml);
             return true;
         } catch (IOException | RuntimeException e) {
             logger.error(ERROR_COULDNT_RENDER_UML, pumlFile, e);
@@ -104,6 +155,52 @@ public abstract class UMLDiagram extends UMLPart {
         }
     }
 
+    /**
+     * @return The metrics of this diagram, named after its {@code .puml} file.
+     * Obtaining the metrics does not create any directories.
+     */
+    public DiagramMetrics getMetrics() {
+        return getConfiguration().getDiagramMetrics(pumlFile().getPath());
+    }
+
+    /**
+     * Counts the elements below the specified part.
+     * <p>
+     * A {@link RenderedPart} counts as the elements of the part it replaced,
+     * so a diagram has the same number of elements whether it is streamed or not.
+     *
+     * @param part The part to count the elements of.
+     * @return The number of elements below the part.
+     */
+    static int countElements(UMLPart part) {
+        int count = 0;
+        for (UMLPart child : part.getChildren()) {
+            if (child instanceof RenderedPart) count += ((RenderedPart) child).elements;
+            else if (child != NEWLINE) count += 1 + countElements(child);
+        }
+        return count;
+    }
+
+    /**
+     * Whether the {@code .puml} file already contains the specified diagram and all images are up-to-date.
+     *
+     * @param pumlFile The plantuml file to check.
+     * @param uml      The rendered diagram.
+     * @return {@code true} if the file and images need not be written again.
+     * @throws IOException if the existing file could not be read.
+     */
+    private boolean isUpToDate(File pumlFile, String uml) throws IOException {
+        if (!pumlFile.isFile()) return false;
+        final byte[] expected = uml.getBytes(getConfiguration().getUmlCharset());
+        if (pumlFile.length() != expected.length
+                || !Arrays.equals(expected, Files.readAllBytes(pumlFile.toPath()))) return false;
+        for (String imageFormat : getConfiguration().getImageFormats()) {
+            File image = new File(pumlFile.getParentFile(), baseName(pumlFile) + "." + imageFormat);
+            if (!image.isFile() || image.lastModified() < pumlFile.lastModified()) return false;
+        }
+        return true;
+    }
+
     /**
      * Ensure the parent directory exists by attempting to create it if it doensn't yet exist.
      *
@@ -123,20 +220,4 @@ public abstract class UMLDiagram extends UMLPart {
         return lastDot > 0 ? name.substring(0, lastDot) : name;
     }
 
-    private IndentingPrintWriter createPlantumlWriter(File pumlFile) throws IOException {
-        Configuration config = getConfiguration();
-        Logger logger = config.getLogger();
-        // TODO Make these configurable:
-        File imgdir = ensureParentDir(pumlFile).getParentFile();
-        String baseName = baseName(pumlFile);
-        String[] imgFormats = new String[]{"svg", "png"};
-        Indentation indentation = config.getIndentation();
-
-        return IndentingPrintWriter.wrap(
-                new PlantumlImageWriter(
-                        new OutputStreamWriter(new FileOutputStream(pumlFile)),
-                        logger, imgdir, baseName, imgFormats),
-                indentation);
-    }
-
 }
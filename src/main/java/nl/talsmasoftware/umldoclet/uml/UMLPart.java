@@ -19,7 +19,6 @@ import nl.talsmasoftware.umldoclet.rendering.indent.IndentingPrintWriter;
 import nl.talsmasoftware.umldoclet.rendering.indent.IndentingRenderer;
 import nl.talsmasoftware.umldoclet.uml.configuration.Configuration;
 
-import java.io.StringWriter;
 import java.util.Collection;
 
 import static java.util.Collections.emptySet;
@@ -100,7 +99,7 @@ public abstract class UMLPart implements IndentingRenderer {
      * @return The rendered content of this renderer.
      */
     public String toString() {
-        return writeTo(IndentingPrintWriter.wrap(new StringWriter(), getConfiguration().getIndentation())).toString();
+        return writeTo(IndentingPrintWriter.wrap(new StringBuilder(), getConfiguration().getIndentation())).toString();
     }
 
 }
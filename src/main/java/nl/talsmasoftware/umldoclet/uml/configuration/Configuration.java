@@ -16,8 +16,12 @@
 package nl.talsmasoftware.umldoclet.uml.configuration;
 
 import nl.talsmasoftware.umldoclet.logging.Logger;
+import nl.talsmasoftware.umldoclet.metrics.DiagramMetrics;
+import nl.talsmasoftware.umldoclet.rendering.DeferredRendering;
+import nl.talsmasoftware.umldoclet.rendering.ImageRendererFactory;
 import nl.talsmasoftware.umldoclet.rendering.indent.Indentation;
 
+import java.nio.charset.Charset;
 import java.util.List;
 
 /**
@@ -39,6 +43,53 @@ public interface Configuration {
      */
     String getDestinationDirectory();
 
+    /**
+     * @return The character encoding of the generated UML files.
+     */
+    Charset getUmlCharset();
+
+    /**
+     * @return The names of the image formats to generate for each diagram, e.g. {@code "svg"}.
+     * An empty list means no images are generated while rendering the diagrams.
+     */
+    List<String> getImageFormats();
+
+    /**
+     * @return The factory for the image renderers of the diagrams,
+     * or {@code null} if no {@link #getImageFormats() images} are generated while rendering the diagrams.
+     */
+    ImageRendererFactory getImageRendererFactory();
+
+    /**
+     * @return The manifest of diagrams of which image generation is deferred,
+     * or {@code null} if no image formats are deferred.
+     */
+    DeferredRendering getDeferredImages();
+
+    /**
+     * @return Whether unchanged diagrams should be left untouched instead of being written again.
+     */
+    boolean isIncremental();
+
+    /**
+     * @return Whether diagram models should be released as soon as they are rendered,
+     * keeping memory use flat at the expense of building shared type models more than once.
+     */
+    boolean isStreaming();
+
+    /**
+     * @return Whether an overview diagram with the dependencies between all documented packages should be generated.
+     */
+    boolean isPackageDependencies();
+
+    /**
+     * Returns the timing and size measurements of a single diagram of the current run.
+     *
+     * @param diagramName The name of the diagram.
+     * @return The metrics of the diagram.
+     */
+    DiagramMetrics getDiagramMetrics(String diagramName);
+
     /**
      * @return The part of the configuration that determines how fields are rendered.
      */
@@ -54,4 +105,16 @@ public interface Configuration {
      */
     List<String> getExcludedTypeReferences();
 
+    /**
+     * @return The packages of which frequently referenced types are left out of package diagrams.
+     * @see #getPruneThreshold()
+     */
+    List<String> getPrunedPackages();
+
+    /**
+     * @return The number of references to a type from a {@link #getPrunedPackages() pruned package}
+     * that is allowed in a package diagram. Types with more references are left out, including their references.
+     */
+    int getPruneThreshold();
+
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet;
+
+import nl.talsmasoftware.umldoclet.testing.SyntheticSourceTree;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.spi.ToolProvider;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Scale test asserting that the run time and peak heap of the doclet grow roughly linearly with the number of classes.
+ * <p>
+ * The doclet runs on {@link SyntheticSourceTree generated sources} of increasing size.
+ * The sizes can be set with the {@code umldoclet.scale.classes} system property (default {@code 100,1000,10000}).
+ * Being an integration test, it is not part of the regular build; run it with
+ * {@code mvn test -Dtest=UMLDocletScaleIT}.
+ * The first size serves as warm-up; the cost per class of each next size is compared to the size before it.
+ *
+ * @author Sjoerd Talsma
+ */
+public class UMLDocletScaleIT {
+    private static final int CLASSES_PER_PACKAGE = 20;
+    private static final double MAX_GROWTH_PER_CLASS = 3.0;
+
+    private final ToolProvider javadoc = ToolProvider.findFirst("javadoc").get();
+
+    @Test
+    public void testLinearGrowth() throws IOException {
+        Measurement warmup = null, previous = null;
+        for (String size : System.getProperty("umldoclet.scale.classes", "100,1000,10000").split(",")) {
+            Measurement current = measure(Integer.parseInt(size.trim()));
+            System.out.println(current);
+            if (warmup == null) {
+                warmup = current;
+                continue;
+            } else if (previous != null) {
+                assertThat("Time per class of " + current + " compared to " + previous,
+                        current.nanosPerClass(), is(lessThanOrEqualTo(previous.nanosPerClass() * MAX_GROWTH_PER_CLASS)));
+                assertThat("Heap per class of " + current + " compared to " + previous,
+                        current.heapPerClass(), is(lessThanOrEqualTo(previous.heapPerClass() * MAX_GROWTH_PER_CLASS)));
+            }
+            previous = current;
+        }
+    }
+
+    private Measurement measure(int classes) throws IOException {
+        final Path baseDir = Paths.get("target/scale-test/" + classes);
+        deleteRecursively(baseDir);
+        SyntheticSourceTree tree = new SyntheticSourceTree()
+                .packages(Math.max(1, classes / CLASSES_PER_PACKAGE))
+                .classesPerPackage(Math.min(classes, CLASSES_PER_PACKAGE));
+        List<String> args = new ArrayList<>();
+        args.add("-quiet");
+        args.add("-d");
+        args.add(baseDir.resolve("apidocs").toString());
+        args.add("-doclet");
+        args.add(UMLDoclet.class.getName());
+        tree.writeTo(baseDir.resolve("src")).forEach(source -> args.add(source.toString()));
+
+        System.gc();
+        final long heapBefore = heapUsed();
+        heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+        final long start = System.nanoTime();
+        assertThat(javadoc.run(System.out, System.err, args.toArray(new String[0])), is(0));
+        final long nanos = System.nanoTime() - start;
+        final long peakHeap = heapPools().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        return new Measurement(tree.classCount(), nanos, Math.max(0L, peakHeap - heapBefore));
+    }
+
+    private static Stream<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream().filter(pool -> MemoryType.HEAP.equals(pool.getType()));
+    }
+
+    private static long heapUsed() {
+        return heapPools().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (Files.exists(dir)) try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static final class Measurement {
+        private final int classes;
+        private final long nanos, peakHeap;
+
+        private Measurement(int classes, long nanos, long peakHeap) {
+            this.classes = classes;
+            this.nanos = nanos;
+            this.peakHeap = peakHeap;
+        }
+
+        private double nanosPerClass() {
+            return (double) nanos / classes;
+        }
+
+        private double heapPerClass() {
+            return (double) peakHeap / classes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d classes: %,d ms, peak heap %,d MB", classes, nanos / 1_000_000, peakHeap >> 20);
+        }
+    }
+
+}
@@ -16,10 +16,39 @@
 package nl.talsmasoftware.umldoclet;
 
 import nl.talsmasoftware.umldoclet.javadoc.DocletConfig;
+import nl.talsmasoftware.umldoclet.logging.Logger;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.DeferredImages;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.PlantumlBatchRenderer;
 import nl.talsmasoftware.umldoclet.uml.UMLDiagram;
+import nl.talsmasoftware.umldoclet.testing.Testing;
 import org.junit.Test;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.spi.ToolProvider;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.mock;
 
 public class UMLDocletTest {
 
@@ -38,4 +67,220 @@ public class UMLDocletTest {
         );
     }
 
+    @Test
+    public void testNonNumericThreadsIsRejected() {
+        String output = runWithInvalidOption("-umlThreads", "abc");
+        assertThat(output, containsString("-umlThreads"));
+        assertThat(output, containsString("\"abc\""));
+        assertThat(output, not(containsString("file a bug")));
+    }
+
+    @Test
+    public void testZeroThreadsIsRejected() {
+        String output = runWithInvalidOption("-umlThreads", "0");
+        assertThat(output, containsString("-umlThreads"));
+        assertThat(output, containsString("\"0\""));
+    }
+
+    @Test
+    public void testInvalidEncodingIsRejected() {
+        String output = runWithInvalidOption("-umlEncoding", "no-such-encoding");
+        assertThat(output, containsString("-umlEncoding"));
+        assertThat(output, containsString("\"no-such-encoding\""));
+        assertThat(output, not(containsString("file a bug")));
+    }
+
+    /**
+     * Runs javadoc with an option value the doclet must reject.
+     *
+     * @return The output of the run.
+     */
+    private String runWithInvalidOption(String option, String value) {
+        StringWriter output = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(output)) {
+            int exitCode = javadoc.run(writer, writer, "-sourcepath", "src/main/java",
+                    "-d", "target/doclet-invalid-option", "-doclet", UMLDoclet.class.getName(),
+                    option, value, UMLDiagram.class.getPackageName());
+            assertThat(exitCode, is(not(0)));
+        }
+        return output.toString();
+    }
+
+    @Test
+    public void testConcurrentRenderingProducesIdenticalOutput() throws IOException {
+        for (String threads : new String[]{"1", "4"}) {
+            assertThat(javadoc.run(System.out, System.err,
+                    "-sourcepath", "src/main/java",
+                    "-d", "target/doclet-threads-" + threads,
+                    "-doclet", UMLDoclet.class.getName(),
+                    "-umlThreads", threads,
+                    UMLDiagram.class.getPackageName()
+            ), is(0));
+        }
+
+        List<Path> sequential = pumlFiles(Paths.get("target/doclet-threads-1"));
+        assertThat(sequential.isEmpty(), is(false));
+        for (Path puml : sequential) {
+            Path concurrent = Paths.get("target/doclet-threads-4").resolve(Paths.get("target/doclet-threads-1").relativize(puml));
+            assertThat(readUml(concurrent), is(equalTo(readUml(puml))));
+        }
+    }
+
+    @Test
+    public void testStreamingProducesIdenticalOutput() throws IOException {
+        for (String mode : new String[]{"default", "streaming"}) {
+            List<String> args = new ArrayList<>(asList("-sourcepath", "src/main/java",
+                    "-d", "target/doclet-" + mode, "-doclet", UMLDoclet.class.getName(), "-umlThreads", "2",
+                    "-umlMetricsFile", "target/metrics-" + mode + ".json",
+                    DocletConfig.class.getPackageName(), UMLDiagram.class.getPackageName()));
+            if ("streaming".equals(mode)) args.add("-umlStreaming");
+            assertThat(javadoc.run(System.out, System.err, args.toArray(new String[0])), is(0));
+        }
+
+        List<Path> expected = pumlFiles(Paths.get("target/doclet-default"));
+        assertThat(expected.isEmpty(), is(false));
+        for (Path puml : expected) {
+            Path streamed = Paths.get("target/doclet-streaming").resolve(Paths.get("target/doclet-default").relativize(puml));
+            assertThat(readUml(streamed), is(equalTo(readUml(puml))));
+        }
+        // Rendered parts must count as the elements they replaced
+        assertThat(elementCounts(Paths.get("target/metrics-streaming.json")),
+                is(equalTo(elementCounts(Paths.get("target/metrics-default.json")))));
+    }
+
+    private static List<String> elementCounts(Path metricsFile) throws IOException {
+        Matcher matcher = Pattern.compile("\"elements\": \\d+").matcher(new String(Files.readAllBytes(metricsFile), UTF_8));
+        List<String> counts = new ArrayList<>();
+        while (matcher.find()) counts.add(matcher.group());
+        assertThat(counts.isEmpty(), is(false));
+        return counts;
+    }
+
+    @Test
+    public void testIncrementalRunLeavesUnchangedFilesUntouched() throws IOException {
+        String[] args = {"-sourcepath", "src/main/java", "-d", "target/doclet-incremental",
+                "-doclet", UMLDoclet.class.getName(), "-umlIncremental", "-umlImageThreads", "0",
+                UMLDiagram.class.getPackageName()};
+        assertThat(javadoc.run(System.out, System.err, args), is(0));
+        List<Path> pumlFiles = pumlFiles(Paths.get("target/doclet-incremental"));
+        assertThat(pumlFiles.isEmpty(), is(false));
+        FileTime yesterday = FileTime.fromMillis(System.currentTimeMillis() - 24 * 60 * 60 * 1000L);
+        for (Path puml : pumlFiles) Files.setLastModifiedTime(puml, yesterday);
+
+        assertThat(javadoc.run(System.out, System.err, args), is(0));
+        for (Path puml : pumlFiles) assertThat(puml.toString(), Files.getLastModifiedTime(puml), is(yesterday));
+    }
+
+    @Test
+    public void testTextOnlyRunWritesNoImages() throws IOException {
+        Path destination = Paths.get("target/doclet-text-only");
+        assertThat(javadoc.run(System.out, System.err, "-sourcepath", "src/main/java", "-d", destination.toString(),
+                "-doclet", UMLDoclet.class.getName(), "-umlImageFormats", "none",
+                UMLDiagram.class.getPackageName()), is(0));
+        assertThat(pumlFiles(destination).isEmpty(), is(false));
+        try (Stream<Path> files = Files.walk(destination)) {
+            assertThat(files.map(Path::toString).filter(name -> name.endsWith(".svg") || name.endsWith(".png")).count(),
+                    is(0L));
+        }
+    }
+
+    @Test
+    public void testTextOnlyRunDoesNotLoadPlantuml() throws IOException, InterruptedException {
+        assertThat(loadedPlantumlClasses("none"), is(0L));
+        assertThat("control run with images", loadedPlantumlClasses("svg"), is(not(0L)));
+    }
+
+    /**
+     * Runs the doclet in a separate JVM, counting the PlantUML classes that JVM loaded.
+     */
+    private static long loadedPlantumlClasses(String imageFormats) throws IOException, InterruptedException {
+        Path log = Paths.get("target/doclet-classes-" + imageFormats + ".log");
+        Process javadoc = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "javadoc").toString(), "-J-verbose:class", "-quiet",
+                "-cp", System.getProperty("java.class.path"), "-docletpath", System.getProperty("java.class.path"),
+                "-doclet", UMLDoclet.class.getName(),
+                "-sourcepath", "src/main/java", "-d", "target/doclet-classes-" + imageFormats,
+                "-umlImageFormats", imageFormats, UMLDiagram.class.getPackageName())
+                .redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        assertThat(javadoc.waitFor(), is(0));
+        try (Stream<String> lines = Files.lines(log)) {
+            return lines.filter(line -> line.contains("[class,load] net.sourceforge.plantuml.")).count();
+        }
+    }
+
+    @Test
+    public void testDeferredImagesAreRenderedByBatchRenderer() throws IOException {
+        Path destination = Paths.get("target/doclet-deferred");
+        assertThat(javadoc.run(System.out, System.err, "-sourcepath", "src/main/java", "-d", destination.toString(),
+                "-doclet", UMLDoclet.class.getName(), "-umlImageFormats", "none", "-umlDeferredImageFormats", "svg",
+                UMLDiagram.class.getPackageName()), is(0));
+        List<Path> pumlFiles = pumlFiles(destination);
+        assertThat(pumlFiles.isEmpty(), is(false));
+        for (Path puml : pumlFiles) assertThat(puml.toString(), Files.exists(svgOf(puml)), is(false));
+
+        DeferredImages deferredImages = DeferredImages.read(destination.resolve(DeferredImages.MANIFEST_NAME).toFile());
+        assertThat(deferredImages.getDiagrams(), hasSize(pumlFiles.size()));
+        assertThat(new PlantumlBatchRenderer(mock(Logger.class)).render(deferredImages), is(true));
+        for (Path puml : pumlFiles) assertThat(puml.toString(), Files.isRegularFile(svgOf(puml)), is(true));
+    }
+
+    @Test
+    public void testDeferredImageFormatsAreNotRenderedDuringJavadoc() throws IOException {
+        Path destination = Paths.get("target/doclet-deferred-png");
+        assertThat(javadoc.run(System.out, System.err, "-sourcepath", "src/main/java", "-d", destination.toString(),
+                "-doclet", UMLDoclet.class.getName(), "-umlDeferredImageFormats", "png",
+                UMLDiagram.class.getPackageName()), is(0));
+        List<Path> pumlFiles = pumlFiles(destination);
+        assertThat(pumlFiles.isEmpty(), is(false));
+        for (Path puml : pumlFiles) {
+            assertThat(puml.toString(), Files.isRegularFile(svgOf(puml)), is(true));
+            assertThat(puml.toString(), Files.exists(pngOf(puml)), is(false));
+        }
+        DeferredImages deferredImages = DeferredImages.read(destination.resolve(DeferredImages.MANIFEST_NAME).toFile());
+        assertThat(deferredImages.getFormats(), contains("png"));
+        assertThat(deferredImages.getDiagrams(), hasSize(pumlFiles.size()));
+    }
+
+    @Test
+    public void testPackageDependencyOverview() throws IOException {
+        Path destination = Paths.get("target/doclet-package-dependencies");
+        assertThat(javadoc.run(System.out, System.err, "-sourcepath", "src/main/java", "-d", destination.toString(),
+                "-doclet", UMLDoclet.class.getName(), "-umlImageFormats", "none", "-umlPackageDependencies",
+                UMLDoclet.class.getPackageName(), DocletConfig.class.getPackageName(), UMLDiagram.class.getPackageName()
+        ), is(0));
+        String uml = readUml(destination.resolve("package-dependencies.puml"));
+        assertThat(uml, containsString("package " + UMLDiagram.class.getPackageName() + " {}"));
+        assertThat(uml, containsString(DocletConfig.class.getPackageName() + " ..> " + UMLDiagram.class.getPackageName()));
+        assertThat(uml, not(containsString("java.util")));
+    }
+
+    @Test
+    public void testNoPackageDependencyOverviewByDefault() throws IOException {
+        Path destination = Paths.get("target/doclet-no-package-dependencies");
+        assertThat(javadoc.run(System.out, System.err, "-sourcepath", "src/main/java", "-d", destination.toString(),
+                "-doclet", UMLDoclet.class.getName(), "-umlImageFormats", "none",
+                UMLDiagram.class.getPackageName()), is(0));
+        assertThat(Files.exists(destination.resolve("package-dependencies.puml")), is(false));
+    }
+
+    private static Path svgOf(Path puml) {
+        String name = puml.getFileName().toString();
+        return puml.resolveSibling(name.substring(0, name.length() - ".puml".length()) + ".svg");
+    }
+
+    private static Path pngOf(Path puml) {
+        String name = puml.getFileName().toString();
+        return puml.resolveSibling(name.substring(0, name.length() - ".puml".length()) + ".png");
+    }
+
+    private static List<Path> pumlFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(file -> file.toString().endsWith(".puml")).collect(toList());
+        }
+    }
+
+    private static String readUml(Path puml) throws IOException {
+        return Testing.readUml(new FileInputStream(puml.toFile()));
+    }
+
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.javadoc;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author Sjoerd Talsma
+ */
+public class PackageDependenciesTest {
+
+    @Test
+    public void testEmpty() {
+        PackageDependencies dependencies = new PackageDependencies();
+        dependencies.addDependency("a", "b");
+        assertThat(dependencies.isEmpty(), is(true));
+        assertThat(dependencies.getDocumentedDependencies().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testOnlyDependenciesBetweenDocumentedPackages() {
+        PackageDependencies dependencies = new PackageDependencies();
+        dependencies.addDependency("a", "java.util");
+        dependencies.addDependency("a", "c");
+        dependencies.addDependency("a", "b");
+        dependencies.addDependency("a", "b");
+        dependencies.addDependency("java.util", "a");
+        dependencies.addDocumentedPackage("c");
+        dependencies.addDocumentedPackage("a");
+        dependencies.addDocumentedPackage("b");
+
+        assertThat(dependencies.getDocumentedDependencies().keySet(), contains("a", "b", "c"));
+        assertThat(dependencies.getDocumentedDependencies().get("a"), contains("b", "c"));
+        assertThat(dependencies.getDocumentedDependencies().get("b"), is(empty()));
+    }
+
+    @Test
+    public void testReferencesWithinPackageAreIgnored() {
+        PackageDependencies dependencies = new PackageDependencies();
+        dependencies.addDocumentedPackage("a");
+        dependencies.addDependency("a", "a");
+        assertThat(dependencies.getDocumentedDependencies().get("a"), is(empty()));
+    }
+
+}
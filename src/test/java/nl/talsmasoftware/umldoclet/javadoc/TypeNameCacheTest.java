@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.javadoc;
+
+import com.sun.source.util.JavacTask;
+import nl.talsmasoftware.umldoclet.uml.TypeName;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.net.URI;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * @author Sjoerd Talsma
+ */
+public class TypeNameCacheTest {
+
+    private static final String SOURCE = "package test;\n" +
+            "import java.util.List;\n" +
+            "class Sample<T> {\n" +
+            "    List<String> strings;\n" +
+            "    List<String> moreStrings;\n" +
+            "    T variable;\n" +
+            "    List<T> variables;\n" +
+            "}\n";
+
+    private static Types types;
+    private static Elements elements;
+    private static TypeElement sample;
+
+    @BeforeClass
+    public static void compileSample() throws Exception {
+        JavaFileObject source = new SimpleJavaFileObject(URI.create("string:///test/Sample.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return SOURCE;
+            }
+        };
+        JavacTask task = (JavacTask) ToolProvider.getSystemJavaCompiler()
+                .getTask(null, null, null, null, null, singletonList(source));
+        task.analyze();
+        types = task.getTypes();
+        elements = task.getElements();
+        sample = elements.getTypeElement("test.Sample");
+    }
+
+    private static TypeMirror fieldType(String name) {
+        return sample.getEnclosedElements().stream()
+                .filter(element -> element.getSimpleName().contentEquals(name))
+                .map(Element::asType)
+                .findFirst().orElseThrow(() -> new IllegalArgumentException("No field " + name));
+    }
+
+    @Test
+    public void testEqualTypesAreCached() {
+        TypeNameCache cache = new TypeNameCache(types);
+        TypeMirror strings = fieldType("strings");
+        TypeMirror moreStrings = fieldType("moreStrings");
+        assertThat(strings == moreStrings, is(false));
+
+        assertThat(cache.typeName(moreStrings), is(sameInstance(cache.typeName(strings))));
+        assertThat(cache.misses(), is(1L));
+        assertThat(cache.hits(), is(1L));
+    }
+
+    @Test
+    public void testTypeVariablesAreNeverCached() {
+        TypeNameCache cache = new TypeNameCache(types);
+        for (String field : new String[]{"variable", "variable", "variables", "variables"}) {
+            cache.typeName(fieldType(field));
+        }
+        assertThat(cache.misses(), is(4L));
+        assertThat(cache.hits(), is(0L));
+    }
+
+    @Test
+    public void testOnlyTopLevelLookupsAreCounted() {
+        TypeNameCache cache = new TypeNameCache(types);
+        TypeNameWithCardinality withCardinality = cache.typeNameWithCardinality(fieldType("strings"));
+        assertThat(cache.misses(), is(1L));
+        assertThat(cache.hits(), is(0L));
+
+        assertThat(cache.typeNameWithCardinality(fieldType("moreStrings")), is(sameInstance(withCardinality)));
+        assertThat(cache.misses(), is(1L));
+        assertThat(cache.hits(), is(1L));
+    }
+
+    @Test
+    public void testInternSharesEqualNames() {
+        TypeNameCache cache = new TypeNameCache(types);
+        String name = cache.intern(new String("java.util.List"));
+        assertThat(cache.intern(new String("java.util.List")), is(sameInstance(name)));
+        assertThat(cache.intern(null), is(nullValue()));
+    }
+
+    @Test
+    public void testPackageNamesAreShared() {
+        TypeNameCache cache = new TypeNameCache(types);
+        String packageName = cache.packageName(elements.getPackageElement("test"));
+        assertThat(packageName, is("test"));
+        assertThat(cache.packageName(elements.getPackageElement("test")), is(sameInstance(packageName)));
+        assertThat(cache.intern(new String("test")), is(sameInstance(packageName)));
+    }
+
+    @Test
+    public void testUncachedTypeNamesShareTheirNames() {
+        TypeNameCache cache = new TypeNameCache(types);
+        TypeName first = cache.typeName(fieldType("variables"));
+        TypeName second = cache.typeName(fieldType("variables"));
+        assertThat(second, is(not(sameInstance(first))));
+        assertThat(second.qualified, is(sameInstance(first.qualified)));
+        assertThat(second.simple, is(sameInstance(first.simple)));
+        assertThat(cache.typeName(fieldType("strings")).qualified, is(sameInstance(first.qualified)));
+    }
+
+}
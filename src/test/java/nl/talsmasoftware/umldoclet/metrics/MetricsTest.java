@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.metrics;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author Sjoerd Talsma
+ */
+public class MetricsTest {
+
+    @Test
+    public void testAggregatePhases() {
+        Metrics metrics = new Metrics();
+        metrics.forDiagram("b.puml").record(DiagramMetrics.RENDER, 300L);
+        metrics.forDiagram("a.puml").record(DiagramMetrics.RENDER, 200L);
+        metrics.forDiagram("a.puml").record(DiagramMetrics.imagePhase(".svg"), 1000L);
+        metrics.forDiagram("a.puml").bytesWritten(42L);
+        metrics.forDiagram("b.puml").bytesWritten(8L);
+
+        assertThat(metrics.getDiagrams(), hasSize(2));
+        assertThat(metrics.getDiagrams().get(0).getName(), is("a.puml"));
+        assertThat(metrics.getNanosByPhase(), allOf(hasEntry("render", 500L), hasEntry("image.svg", 1000L)));
+        assertThat(metrics.getBytesWritten(), is(50L));
+    }
+
+    @Test
+    public void testSummary() {
+        Metrics metrics = new Metrics();
+        metrics.forDiagram("a.puml").record(DiagramMetrics.MODEL, 1_000_000L);
+        metrics.forDiagram("a.puml").elements(3);
+        assertThat(metrics.summary(), startsWith("1 diagrams, 3 elements, 0 bytes written"));
+        assertThat(metrics.summary(), containsString("model"));
+    }
+
+    @Test
+    public void testJson() throws IOException {
+        Metrics metrics = new Metrics();
+        DiagramMetrics diagram = metrics.forDiagram("dir\\\"quoted\".puml");
+        diagram.record(DiagramMetrics.WRITE, 12L);
+        diagram.elements(5);
+
+        StringWriter json = new StringWriter();
+        metrics.writeJsonTo(json);
+        assertThat(json.toString(), containsString("\"diagramCount\": 1"));
+        assertThat(json.toString(), containsString("{\"name\": \"dir\\\\\\\"quoted\\\".puml\", \"elements\": 5"));
+        assertThat(json.toString(), containsString("\"nanosByPhase\": {\"write\": 12}"));
+    }
+
+}
@@ -19,6 +19,9 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 import static nl.talsmasoftware.umldoclet.rendering.writers.ThrowingWriter.throwing;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -37,6 +40,42 @@ public class IndentingWriterTest {
         assertThat(output, hasToString("23"));
     }
 
+    @Test
+    public void testIndentExampleDiagram() throws IOException {
+        String content = read("example/indent-package.puml");
+        // Written by the IndentingWriter before spans were written in bulk.
+        String expected = read("src/test/resources/indent-package-indented.puml");
+
+        StringWriter bulk = new StringWriter();
+        new IndentingWriter(bulk, Indentation.DEFAULT).indent().write(content);
+        assertThat(bulk.toString(), is(equalTo(expected)));
+
+        StringWriter perCharacter = new StringWriter();
+        IndentingWriter writer = new IndentingWriter(perCharacter, Indentation.DEFAULT).indent();
+        for (char ch : content.toCharArray()) writer.write(ch);
+        assertThat(perCharacter.toString(), is(equalTo(expected)));
+
+        StringBuilder appendable = new StringBuilder();
+        new IndentingWriter(appendable, Indentation.DEFAULT).indent().write(content);
+        assertThat(appendable.toString(), is(equalTo(expected)));
+    }
+
+    private static String read(String file) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testIndentationOnlyAtLineStarts() throws IOException {
+        StringWriter output = new StringWriter();
+        IndentingWriter writer = new IndentingWriter(output, Indentation.DEFAULT).indent();
+        writer.write("first\nsecond\r\n\nthird");
+        assertThat(output, hasToString("    first\n    second\r\n\n    third"));
+
+        StringBuilder appendable = new StringBuilder();
+        new IndentingWriter(appendable, Indentation.DEFAULT).indent().write("first\nsecond");
+        assertThat(appendable, hasToString("    first\n    second"));
+    }
+
     @Test
     public void testUnindentFromZero() {
         IndentingWriter indentingWriter = new IndentingWriter(new StringWriter(), Indentation.DEFAULT);
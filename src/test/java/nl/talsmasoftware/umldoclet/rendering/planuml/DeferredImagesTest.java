@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.planuml;
+
+import nl.talsmasoftware.umldoclet.rendering.plantuml.DeferredImages;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author Sjoerd Talsma
+ */
+public class DeferredImagesTest {
+    private File tempdir;
+
+    @Before
+    public void createTempdir() throws IOException {
+        tempdir = File.createTempFile("deferred-images-", ".tmp");
+        assertThat("Created temporary directory", tempdir.delete() && tempdir.mkdirs(), is(true));
+        tempdir.deleteOnExit();
+    }
+
+    @Test
+    public void testWriteAndReadManifest() throws IOException {
+        File manifest = new File(tempdir, DeferredImages.MANIFEST_NAME);
+        DeferredImages deferredImages = new DeferredImages(manifest, StandardCharsets.ISO_8859_1, asList("png", "svg"));
+        deferredImages.add(new File(tempdir, "b/B.puml"));
+        deferredImages.add(new File(tempdir, "a/A.puml"));
+        deferredImages.add(new File(tempdir, "a/A.puml"));
+        deferredImages.write();
+
+        assertThat(new String(Files.readAllBytes(manifest.toPath()), StandardCharsets.UTF_8), is(
+                "charset: ISO-8859-1\nformats: png, svg\ndiagram: a/A.puml\ndiagram: b/B.puml\n"));
+
+        DeferredImages read = DeferredImages.read(manifest);
+        assertThat(read.getCharset(), is(StandardCharsets.ISO_8859_1));
+        assertThat(read.getFormats(), contains("png", "svg"));
+        assertThat(read.getDiagrams(), contains(
+                new File(tempdir.getAbsoluteFile(), "a/A.puml"), new File(tempdir.getAbsoluteFile(), "b/B.puml")));
+    }
+
+}
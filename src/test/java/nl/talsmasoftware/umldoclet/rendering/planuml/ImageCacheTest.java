@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.planuml;
+
+import nl.talsmasoftware.umldoclet.logging.Logger;
+import nl.talsmasoftware.umldoclet.metrics.DiagramMetrics;
+import nl.talsmasoftware.umldoclet.metrics.Metrics;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.ImageCache;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.PlantumlImageRendererFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.EnumSet;
+import java.util.stream.Stream;
+
+import static java.nio.file.attribute.PosixFilePermission.GROUP_READ;
+import static java.util.Collections.singletonList;
+import static java.nio.file.attribute.PosixFilePermission.OTHERS_READ;
+import static nl.talsmasoftware.umldoclet.logging.Message.DEBUG_COPYING_CACHED_IMAGE;
+import static nl.talsmasoftware.umldoclet.logging.Message.INFO_GENERATING_FILE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Sjoerd Talsma
+ */
+public class ImageCacheTest {
+    private static final String EXAMPLE_UML = "@startuml\nversion\n@enduml";
+    private File tempdir;
+    private File cachedir;
+
+    @Before
+    public void createTempdirs() throws IOException {
+        tempdir = File.createTempFile("imagecache-", ".tmp");
+        assertThat("Created temporary directory", tempdir.delete() && tempdir.mkdirs(), is(true));
+        cachedir = new File(tempdir, "cache");
+    }
+
+    @After
+    public void cleanupTempdirs() {
+        delete(tempdir);
+    }
+
+    private static void delete(File file) {
+        if (file.isDirectory()) Stream.of(file.listFiles()).forEach(ImageCacheTest::delete);
+        assertThat("Delete " + file, file.delete(), is(true));
+    }
+
+    @Test
+    public void testKeyDependsOnSource() {
+        ImageCache cache = new ImageCache(cachedir, Long.MAX_VALUE);
+        assertThat(cache.keyOf(EXAMPLE_UML), is(equalTo(cache.keyOf(EXAMPLE_UML))));
+        assertThat(cache.keyOf(EXAMPLE_UML), is(not(equalTo(cache.keyOf(EXAMPLE_UML + "\n")))));
+        assertThat(cache.keyOf(EXAMPLE_UML).length(), is(64));
+    }
+
+    @Test
+    public void testStoreAndRestore() throws IOException {
+        ImageCache cache = new ImageCache(cachedir, Long.MAX_VALUE);
+        File target = new File(tempdir, "restored.svg");
+        String key = cache.keyOf(EXAMPLE_UML);
+        assertThat(cache.restore(key, ".svg", target), is(false));
+
+        cache.store(key, ".svg", new byte[]{1, 2, 3});
+        assertThat(cache.restore(key, ".svg", target), is(true));
+        assertThat(Files.readAllBytes(target.toPath()), is(new byte[]{1, 2, 3}));
+        assertThat(cache.restore(key, ".png", target), is(false));
+    }
+
+    @Test
+    public void testCachedImagesAreReadableByOthers() throws IOException {
+        assumeTrue(Files.getFileStore(tempdir.toPath()).supportsFileAttributeView(PosixFileAttributeView.class));
+        File plain = new File(tempdir, "plain.svg");
+        Files.write(plain.toPath(), new byte[]{1});
+        assumeTrue("umask allows group and others to read",
+                Files.getPosixFilePermissions(plain.toPath()).containsAll(EnumSet.of(GROUP_READ, OTHERS_READ)));
+
+        ImageCache cache = new ImageCache(cachedir, Long.MAX_VALUE);
+        String key = cache.keyOf(EXAMPLE_UML);
+        cache.store(key, ".svg", new byte[]{1, 2, 3});
+        assertThat(Files.getPosixFilePermissions(new File(cachedir, key + ".svg").toPath()),
+                is(Files.getPosixFilePermissions(plain.toPath())));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedImagesAreEvicted() throws IOException {
+        ImageCache cache = new ImageCache(cachedir, 25);
+        File target = new File(tempdir, "restored.png");
+        cache.store("oldest", ".png", new byte[10]);
+        cache.store("used", ".png", new byte[10]);
+        Files.setLastModifiedTime(new File(cachedir, "oldest.png").toPath(), FileTime.fromMillis(1000L));
+        Files.setLastModifiedTime(new File(cachedir, "used.png").toPath(), FileTime.fromMillis(2000L));
+        assertThat(cache.restore("used", ".png", target), is(true));
+
+        cache.store("newest", ".png", new byte[10]);
+        assertThat(cache.restore("oldest", ".png", target), is(false));
+        assertThat(cache.restore("used", ".png", target), is(true));
+        assertThat(cache.restore("newest", ".png", target), is(true));
+    }
+
+    @Test
+    public void testCachedImageIsNotRenderedAgain() throws IOException {
+        ImageCache cache = new ImageCache(cachedir, Long.MAX_VALUE);
+        File svgFile = new File(tempdir, "version.svg");
+        for (int run = 0; run < 2; run++) {
+            rendererFactory(mock(Logger.class), cache).create(tempdir, "version", null).render(EXAMPLE_UML);
+        }
+        Logger logger = mock(Logger.class);
+        assertThat("Delete " + svgFile, svgFile.delete(), is(true));
+        DiagramMetrics metrics = new Metrics().forDiagram("version.puml");
+        rendererFactory(logger, cache).create(tempdir, "version", metrics).render(EXAMPLE_UML);
+        assertThat(svgFile + " exists?", svgFile.isFile(), is(true));
+        assertThat(metrics.getNanosByPhase(), hasKey("image.svg"));
+        verify(logger).debug(eq(DEBUG_COPYING_CACHED_IMAGE), eq(svgFile), eq(cache));
+        verify(logger, never()).info(eq(INFO_GENERATING_FILE), any());
+    }
+
+    private static PlantumlImageRendererFactory rendererFactory(Logger logger, ImageCache cache) {
+        return new PlantumlImageRendererFactory(logger, null, cache, null, null, singletonList("svg"));
+    }
+
+}
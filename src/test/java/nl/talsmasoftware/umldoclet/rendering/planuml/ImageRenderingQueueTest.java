@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.planuml;
+
+import nl.talsmasoftware.umldoclet.logging.Logger;
+import nl.talsmasoftware.umldoclet.metrics.Metrics;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.ImageRenderingQueue;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.PlantumlImageRendererFactory;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.singletonList;
+import static nl.talsmasoftware.umldoclet.logging.Message.ERROR_COULDNT_RENDER_UML;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Sjoerd Talsma
+ */
+public class ImageRenderingQueueTest {
+
+    @Test
+    public void testAllTasksCompleteBeforeAwaitReturns() {
+        ImageRenderingQueue queue = new ImageRenderingQueue(mock(Logger.class), 3);
+        AtomicInteger completed = new AtomicInteger(0);
+        for (int i = 0; i < 100; i++) queue.execute(completed::incrementAndGet);
+        assertThat(queue.awaitCompletion(), is(true));
+        assertThat(completed.get(), is(100));
+    }
+
+    @Test
+    public void testFailedTaskIsReported() {
+        Logger logger = mock(Logger.class);
+        ImageRenderingQueue queue = new ImageRenderingQueue(logger, 1);
+        queue.execute(() -> {
+            throw new IllegalStateException("Rendering failed!");
+        });
+        assertThat(queue.awaitCompletion(), is(false));
+        verify(logger).error(eq(ERROR_COULDNT_RENDER_UML), any(Runnable.class), any(IllegalStateException.class));
+    }
+
+    @Test(timeout = 10000)
+    public void testExecuteBlocksWhenQueueIsFull() throws InterruptedException {
+        ImageRenderingQueue queue = new ImageRenderingQueue(mock(Logger.class), 1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger submitted = new AtomicInteger(0);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                queue.execute(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                submitted.incrementAndGet();
+            }
+        });
+        producer.start();
+        Thread.sleep(250);
+        assertThat("Submitted tasks while blocked", submitted.get(), is(lessThan(100)));
+
+        release.countDown();
+        producer.join();
+        assertThat(queue.awaitCompletion(), is(true));
+        assertThat(submitted.get(), is(100));
+    }
+
+    @Test
+    public void testImagesGeneratedByQueue() throws IOException {
+        File tempdir = File.createTempFile("imagequeue-", ".tmp");
+        assertThat("Created temporary directory", tempdir.delete() && tempdir.mkdirs(), is(true));
+        ImageRenderingQueue queue = new ImageRenderingQueue(mock(Logger.class), 2);
+        PlantumlImageRendererFactory factory = new PlantumlImageRendererFactory(
+                mock(Logger.class), queue, null, null, null, singletonList("svg"));
+        factory.create(tempdir, "version", new Metrics().forDiagram("version.puml")).render("@startuml\nversion\n@enduml");
+        assertThat(queue.awaitCompletion(), is(true));
+
+        File svgFile = new File(tempdir, "version.svg");
+        assertThat(svgFile + " exists?", svgFile.isFile(), is(true));
+        assertThat("Delete " + svgFile, svgFile.delete(), is(true));
+        assertThat("Delete " + tempdir, tempdir.delete(), is(true));
+    }
+
+}
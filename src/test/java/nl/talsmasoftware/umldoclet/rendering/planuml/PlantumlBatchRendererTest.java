@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.planuml;
+
+import nl.talsmasoftware.umldoclet.logging.Logger;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.PlantumlBatchRenderer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static nl.talsmasoftware.umldoclet.logging.Message.DEBUG_SKIPPING_UNCHANGED_FILE;
+import static nl.talsmasoftware.umldoclet.logging.Message.INFO_GENERATED_IMAGES;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Sjoerd Talsma
+ */
+public class PlantumlBatchRendererTest {
+    private Logger mockLogger;
+    private File tempdir;
+    private File first, second;
+
+    @Before
+    public void setUp() throws IOException {
+        mockLogger = mock(Logger.class);
+        tempdir = File.createTempFile("batchrenderer-", ".tmp");
+        assertThat("Created temporary directory", tempdir.delete() && tempdir.mkdirs(), is(true));
+        tempdir.deleteOnExit();
+        first = writeUml(new File(tempdir, "first.puml"));
+        second = writeUml(new File(tempdir, "nested/second.puml"));
+    }
+
+    private static File writeUml(File pumlFile) throws IOException {
+        assertThat(pumlFile.getParentFile().isDirectory() || pumlFile.getParentFile().mkdirs(), is(true));
+        Files.write(pumlFile.toPath(), "@startuml\nversion\n@enduml\n".getBytes(StandardCharsets.UTF_8));
+        return pumlFile;
+    }
+
+    @Test
+    public void testRenderDirectoryTree() throws IOException {
+        PlantumlBatchRenderer renderer = new PlantumlBatchRenderer(mockLogger, 2, false);
+        assertThat(renderer.render(tempdir, StandardCharsets.UTF_8, "svg"), is(true));
+
+        assertThat(new File(tempdir, "first.svg").isFile(), is(true));
+        assertThat(new File(tempdir, "nested/second.svg").isFile(), is(true));
+        verify(mockLogger).info(eq(INFO_GENERATED_IMAGES), eq(first), any());
+        verify(mockLogger).info(eq(INFO_GENERATED_IMAGES), eq(second), any());
+        assertThat(renderer.getMetrics().getDiagrams(), hasSize(2));
+    }
+
+    @Test
+    public void testSkipUpToDateImages() throws IOException {
+        assertThat(new PlantumlBatchRenderer(mockLogger).render(tempdir, StandardCharsets.UTF_8, "svg"), is(true));
+        reset(mockLogger);
+
+        assertThat(new PlantumlBatchRenderer(mockLogger).render(tempdir, StandardCharsets.UTF_8, "svg"), is(true));
+        verify(mockLogger).debug(DEBUG_SKIPPING_UNCHANGED_FILE, first);
+        verify(mockLogger).debug(DEBUG_SKIPPING_UNCHANGED_FILE, second);
+        verify(mockLogger, never()).info(eq(INFO_GENERATED_IMAGES), any(), any());
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.planuml;
+
+import nl.talsmasoftware.umldoclet.logging.Logger;
+import nl.talsmasoftware.umldoclet.metrics.DiagramMetrics;
+import nl.talsmasoftware.umldoclet.metrics.Metrics;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.ImageCache;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.PlantumlImageRenderer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static nl.talsmasoftware.umldoclet.logging.Message.WARNING_IMAGE_RENDERING_TIMEOUT;
+import static nl.talsmasoftware.umldoclet.logging.Message.WARNING_TOO_MANY_ABANDONED_GENERATIONS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Sjoerd Talsma
+ */
+public class PlantumlImageRendererTest {
+    private static String exampleUml = "@startuml\nversion\n@enduml";
+    private Logger mockLogger;
+    private File tempdir;
+
+    @Before
+    public void setUp() throws IOException {
+        mockLogger = mock(Logger.class);
+        tempdir = File.createTempFile("pumlrenderer-", ".tmp");
+        assertThat("Created temporary directory", tempdir.delete() && tempdir.mkdirs(), is(true));
+        tempdir.deleteOnExit(); // An abandoned image generation may still write to the directory.
+    }
+
+    @Test
+    public void testRenderWithinTimeout() throws IOException {
+        DiagramMetrics metrics = new Metrics().forDiagram("version.puml");
+        new PlantumlImageRenderer(mockLogger, null, null, metrics, Duration.ofMinutes(5), tempdir, "version", "svg")
+                .render(exampleUml);
+
+        assertThat(new File(tempdir, "version.svg").isFile(), is(true));
+        assertThat(metrics.getNanosByPhase(), hasKey("image.svg"));
+    }
+
+    @Test
+    public void testAbandonRenderingAfterTimeout() throws IOException {
+        DiagramMetrics metrics = new Metrics().forDiagram("version.puml");
+        new PlantumlImageRenderer(mockLogger, null, null, metrics, Duration.ofNanos(1), tempdir, "version", "svg")
+                .render(exampleUml);
+
+        verify(mockLogger).warn(eq(WARNING_IMAGE_RENDERING_TIMEOUT), eq(new File(tempdir, "version.puml")), any());
+        assertThat(metrics.getNanosByPhase(), hasKey(DiagramMetrics.TIMEOUT));
+    }
+
+    @Test
+    public void testAbandonedRenderingDoesNotWriteImage() throws IOException, InterruptedException {
+        new PlantumlImageRenderer(mockLogger, null, null, null, Duration.ofNanos(1), tempdir, "abandoned", "svg")
+                .render(exampleUml);
+
+        // Give the abandoned generation time to finish in the background.
+        TimeUnit.SECONDS.sleep(3);
+        assertThat(new File(tempdir, "abandoned.svg").exists(), is(false));
+    }
+
+    @Test
+    public void testFinishedAbandonedGenerationsNoLongerCount() throws IOException, InterruptedException {
+        for (int i = 0; i < 2 * Runtime.getRuntime().availableProcessors() + 8; i++) {
+            new PlantumlImageRenderer(mockLogger, null, null, null, Duration.ofNanos(1), tempdir, "abandoned" + i, "svg")
+                    .render(exampleUml);
+        }
+
+        // Give the abandoned generations time to finish in the background.
+        TimeUnit.SECONDS.sleep(3);
+        new PlantumlImageRenderer(mockLogger, null, null, null, Duration.ofMinutes(5), tempdir, "version", "svg")
+                .render(exampleUml);
+
+        verify(mockLogger, never()).warn(eq(WARNING_TOO_MANY_ABANDONED_GENERATIONS), eq(new File(tempdir, "version.puml")), any());
+        assertThat(new File(tempdir, "version.svg").isFile(), is(true));
+    }
+
+    @Test
+    public void testCachedImageIsMovedIntoPlace() throws IOException {
+        File cachedir = new File(tempdir.getPath() + "-cache");
+        cachedir.deleteOnExit();
+        ImageCache cache = new ImageCache(cachedir, Long.MAX_VALUE);
+        cache.store(cache.keyOf(exampleUml), ".svg", new byte[]{1, 2, 3});
+        File imageDir = new File(tempdir, "cached");
+        assertThat(imageDir.mkdirs(), is(true));
+
+        new PlantumlImageRenderer(mockLogger, null, cache, null, Duration.ofMinutes(5), imageDir, "version", "svg")
+                .render(exampleUml);
+
+        assertThat(Files.readAllBytes(new File(imageDir, "version.svg").toPath()), is(new byte[]{1, 2, 3}));
+        assertThat("No temporary files left behind", imageDir.list(), is(arrayContaining("version.svg")));
+    }
+
+}
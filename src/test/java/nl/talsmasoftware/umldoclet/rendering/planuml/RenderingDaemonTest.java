@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.planuml;
+
+import nl.talsmasoftware.umldoclet.logging.Logger;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.DaemonClient;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.PlantumlImageRenderer;
+import nl.talsmasoftware.umldoclet.rendering.plantuml.RenderingDaemon;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.attribute.PosixFilePermission.OWNER_READ;
+import static java.nio.file.attribute.PosixFilePermission.OWNER_WRITE;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author Sjoerd Talsma
+ */
+public class RenderingDaemonTest {
+    private static final String exampleUml = "@startuml\nversion\n@enduml";
+    private Logger mockLogger;
+    private File tempdir, daemonFile;
+    private RenderingDaemon daemon;
+
+    @Before
+    public void startDaemon() throws IOException {
+        mockLogger = mock(Logger.class);
+        tempdir = File.createTempFile("renderingdaemon-", ".tmp");
+        assertThat("Created temporary directory", tempdir.delete() && tempdir.mkdirs(), is(true));
+        tempdir.deleteOnExit();
+        daemonFile = new File(tempdir, "daemon.properties");
+        daemon = new RenderingDaemon(mockLogger, daemonFile, 2, null);
+    }
+
+    @After
+    public void stopDaemon() {
+        daemon.close();
+    }
+
+    @Test
+    public void testRenderByDaemon() {
+        DaemonClient client = new DaemonClient(mockLogger, daemonFile);
+        assertThat(client.ping(), is(true));
+        List<byte[]> images = client.render(singletonList("svg"), exampleUml, null);
+        assertThat(images, hasSize(1));
+        assertThat(new String(images.get(0), StandardCharsets.UTF_8), containsString("<svg"));
+        assertThat("The daemon does not write image files", tempdir.list(), is(arrayContaining(daemonFile.getName())));
+    }
+
+    @Test
+    public void testRendererPublishesImagesFromDaemon() throws IOException {
+        DaemonClient client = new DaemonClient(mockLogger, daemonFile);
+        new PlantumlImageRenderer(mockLogger, null, null, client, null, Duration.ofMinutes(5), tempdir, "version", "svg")
+                .render(exampleUml);
+        assertThat(new File(tempdir, "version.svg").isFile(), is(true));
+    }
+
+    @Test
+    public void testLateReplyFromDaemonIsDiscarded() throws IOException, InterruptedException {
+        DaemonClient client = new DaemonClient(mockLogger, daemonFile);
+        assertThat(client.ping(), is(true));
+        new PlantumlImageRenderer(mockLogger, null, null, client, null, Duration.ofNanos(1), tempdir, "late", "svg")
+                .render(exampleUml);
+
+        // Give the daemon and the abandoned generation time to finish.
+        TimeUnit.SECONDS.sleep(3);
+        assertThat(new File(tempdir, "late.svg").exists(), is(false));
+    }
+
+    @Test
+    public void testRequestWithWrongTokenIsRefused() throws IOException {
+        String published = new String(Files.readAllBytes(daemonFile.toPath()), StandardCharsets.ISO_8859_1);
+        File forgedFile = new File(tempdir, "forged.properties");
+        Files.write(forgedFile.toPath(), published.replaceAll("token=.*", "token=forged")
+                .getBytes(StandardCharsets.ISO_8859_1));
+
+        DaemonClient forged = new DaemonClient(mockLogger, forgedFile);
+        assertThat(forged.ping(), is(false));
+        assertThat(forged.render(singletonList("svg"), exampleUml, null), is(nullValue()));
+    }
+
+    @Test
+    public void testDaemonOfOtherVersionIsNotUsed() throws IOException {
+        String published = new String(Files.readAllBytes(daemonFile.toPath()), StandardCharsets.ISO_8859_1);
+        assertThat(published, containsString("version="));
+        File olderFile = new File(tempdir, "older.properties");
+        Files.write(olderFile.toPath(), published.replaceAll("version=.*", "version=1.0 (PlantUML 8059)")
+                .getBytes(StandardCharsets.ISO_8859_1));
+
+        DaemonClient client = new DaemonClient(mockLogger, olderFile);
+        assertThat(client.ping(), is(false));
+        assertThat(client.render(singletonList("svg"), exampleUml, null), is(nullValue()));
+    }
+
+    @Test
+    public void testDaemonFileIsOnlyAccessibleByOwner() throws IOException {
+        assumeTrue(Files.getFileStore(daemonFile.toPath()).supportsFileAttributeView(PosixFileAttributeView.class));
+        assertThat(Files.getPosixFilePermissions(daemonFile.toPath()), is(EnumSet.of(OWNER_READ, OWNER_WRITE)));
+    }
+
+    @Test
+    public void testClientFallsBackWhenDaemonStopped() {
+        DaemonClient client = new DaemonClient(mockLogger, daemonFile);
+        daemon.close();
+        assertThat(daemonFile.exists(), is(false));
+        assertThat(client.render(singletonList("svg"), exampleUml, null), is(nullValue()));
+    }
+
+}
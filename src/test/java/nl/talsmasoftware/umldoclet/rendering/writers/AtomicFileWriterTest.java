@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.rendering.writers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static java.nio.file.attribute.PosixFilePermission.GROUP_READ;
+import static java.nio.file.attribute.PosixFilePermission.OTHERS_READ;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author Sjoerd Talsma
+ */
+public class AtomicFileWriterTest {
+    private File tempdir;
+
+    @Before
+    public void createTempdir() throws IOException {
+        tempdir = File.createTempFile("atomicwriter-", ".tmp");
+        assertThat("Created temporary directory", tempdir.delete() && tempdir.mkdirs(), is(true));
+    }
+
+    @After
+    public void cleanupTempdir() {
+        Stream.of(tempdir.listFiles()).forEach(f -> assertThat("Delete " + f, f.delete(), is(true)));
+        assertThat("Delete " + tempdir, tempdir.delete(), is(true));
+    }
+
+    @Test
+    public void testFileIsOnlyReplacedWhenClosed() throws IOException {
+        File file = new File(tempdir, "diagram.puml");
+        Files.write(file.toPath(), "previous".getBytes(StandardCharsets.UTF_8));
+
+        AtomicFileWriter writer = new AtomicFileWriter(file, StandardCharsets.UTF_8);
+        writer.write("@startuml\nCafé\n@enduml");
+        writer.flush();
+        assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), is("previous"));
+
+        writer.close();
+        assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8),
+                is("@startuml\nCafé\n@enduml"));
+        assertThat(tempdir.list(), is(arrayContaining("diagram.puml")));
+    }
+
+    @Test
+    public void testExplicitCharset() throws IOException {
+        File file = new File(tempdir, "latin1.puml");
+        try (AtomicFileWriter writer = new AtomicFileWriter(file, StandardCharsets.ISO_8859_1)) {
+            writer.write("Café");
+        }
+        assertThat(Files.readAllBytes(file.toPath()), is(new byte[]{'C', 'a', 'f', (byte) 0xe9}));
+    }
+
+    @Test
+    public void testWriteCompleteContent() throws IOException {
+        File file = new File(tempdir, "diagram.puml");
+        Files.write(file.toPath(), "previous".getBytes(StandardCharsets.UTF_8));
+        assertThat(AtomicFileWriter.write(file, "@startuml\nCafé\n@enduml", StandardCharsets.UTF_8), is(23));
+        assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8),
+                is("@startuml\nCafé\n@enduml"));
+        assertThat(tempdir.list(), is(arrayContaining("diagram.puml")));
+    }
+
+    @Test
+    public void testWrittenFileHasDefaultPermissions() throws IOException {
+        assumeTrue(Files.getFileStore(tempdir.toPath()).supportsFileAttributeView(PosixFileAttributeView.class));
+        File plain = new File(tempdir, "plain.txt");
+        try (Writer writer = new FileWriter(plain)) {
+            writer.write("plain");
+        }
+        Set<PosixFilePermission> defaultPermissions = Files.getPosixFilePermissions(plain.toPath());
+        assumeTrue("umask allows group and others to read",
+                defaultPermissions.containsAll(EnumSet.of(GROUP_READ, OTHERS_READ)));
+
+        File written = new File(tempdir, "diagram.puml");
+        try (AtomicFileWriter writer = new AtomicFileWriter(written, StandardCharsets.UTF_8)) {
+            writer.write("@startuml\n@enduml");
+        }
+        File replaced = new File(tempdir, "replaced.puml");
+        AtomicFileWriter.write(replaced, "@startuml\n@enduml", StandardCharsets.UTF_8);
+
+        assertThat(Files.getPosixFilePermissions(written.toPath()), hasItems(GROUP_READ, OTHERS_READ));
+        assertThat(Files.getPosixFilePermissions(written.toPath()), is(defaultPermissions));
+        assertThat(Files.getPosixFilePermissions(replaced.toPath()), is(defaultPermissions));
+    }
+
+    @Test
+    public void testToString() throws IOException {
+        File file = new File(tempdir, "diagram.puml");
+        try (AtomicFileWriter writer = new AtomicFileWriter(file, StandardCharsets.UTF_8)) {
+            assertThat(writer, hasToString("AtomicFileWriter{" + file + "}"));
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.testing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Generator for a synthetic Java source tree, to test the doclet on inputs of arbitrary size.
+ * <p>
+ * Every package contains a number of interfaces and classes.
+ * The classes form inheritance chains of configurable depth and each class implements a number of interfaces.
+ * Fields use generic collections, arrays and {@code Optional} types referring to other classes in the same package
+ * (exercising the cardinality detection) and are exposed through getters and setters (exercising property detection).
+ * Each class also refers to a class in the previous package, creating foreign-package references.
+ *
+ * @author Sjoerd Talsma
+ */
+public class SyntheticSourceTree {
+
+    private int packages = 10;
+    private int classesPerPackage = 10;
+    private int inheritanceDepth = 3;
+    private int interfaceFanOut = 2;
+
+    /**
+     * @param packages The number of packages to generate (default {@code 10}).
+     * @return This source tree for method chaining.
+     */
+    public SyntheticSourceTree packages(int packages) {
+        this.packages = requirePositive(packages, "packages");
+        return this;
+    }
+
+    /**
+     * @param classesPerPackage The number of classes to generate in each package (default {@code 10}).
+     * @return This source tree for method chaining.
+     */
+    public SyntheticSourceTree classesPerPackage(int classesPerPackage) {
+        this.classesPerPackage = requirePositive(classesPerPackage, "classes per package");
+        return this;
+    }
+
+    /**
+     * @param inheritanceDepth The maximum length of the chains of subclasses (default {@code 3}).
+     * @return This source tree for method chaining.
+     */
+    public SyntheticSourceTree inheritanceDepth(int inheritanceDepth) {
+        this.inheritanceDepth = requirePositive(inheritanceDepth, "inheritance depth");
+        return this;
+    }
+
+    /**
+     * @param interfaceFanOut The number of interfaces implemented by each class (default {@code 2}).
+     * @return This source tree for method chaining.
+     */
+    public SyntheticSourceTree interfaceFanOut(int interfaceFanOut) {
+        if (interfaceFanOut < 0) throw new IllegalArgumentException("Negative interface fan-out: " + interfaceFanOut);
+        this.interfaceFanOut = interfaceFanOut;
+        return this;
+    }
+
+    /**
+     * @return The total number of classes that will be generated, not counting interfaces.
+     */
+    public int classCount() {
+        return packages * classesPerPackage;
+    }
+
+    /**
+     * @param index The index of the package.
+     * @return The name of the generated package.
+     */
+    public static String packageName(int index) {
+        return "synthetic.package" + index;
+    }
+
+    /**
+     * Writes the source tree to the specified directory.
+     *
+     * @param sourceDir The directory to write the source tree to.
+     * @return The generated source files.
+     */
+    public List<Path> writeTo(Path sourceDir) {
+        List<Path> sourceFiles = new ArrayList<>(packages * (classesPerPackage + interfaceFanOut));
+        try {
+            for (int p = 0; p < packages; p++) {
+                final Path packageDir = Files.createDirectories(sourceDir.resolve(packageName(p).replace('.', '/')));
+                for (int i = 0; i < interfaceFanOut; i++) {
+                    sourceFiles.add(write(packageDir.resolve("Service" + i + ".java"), interfaceSource(p, i)));
+                }
+                for (int c = 0; c < classesPerPackage; c++) {
+                    sourceFiles.add(write(packageDir.resolve("Class" + c + ".java"), classSource(p, c)));
+                }
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Could not write synthetic sources to " + sourceDir, ioe);
+        }
+        return sourceFiles;
+    }
+
+    private static Path write(Path file, String source) throws IOException {
+        return Files.write(file, source.getBytes(UTF_8));
+    }
+
+    private String interfaceSource(int p, int i) {
+        return "package " + packageName(p) + ";\n\n"
+                + "/** Generated service interface " + i + ". */\n"
+                + "public interface Service" + i + "<T> {\n"
+                + "    /**\n     * @param input the input\n     * @return the results\n     */\n"
+                + "    java.util.List<T> service" + i + "(java.util.Map<String, ? extends T> input);\n"
+                + "}\n";
+    }
+
+    private String classSource(int p, int c) {
+        final String name = "Class" + c;
+        final String sibling = "Class" + ((c + 1) % classesPerPackage);
+        final StringBuilder source = new StringBuilder("package ").append(packageName(p)).append(";\n\n")
+                .append("import java.util.*;\n\n")
+                .append("/** Generated class ").append(c).append(". */\n")
+                .append("public ").append(c % inheritanceDepth == 0 ? "abstract " : "").append("class ").append(name);
+        if (c % inheritanceDepth > 0) source.append(" extends Class").append(c - 1);
+        for (int i = 0; i < interfaceFanOut; i++) {
+            source.append(i == 0 ? " implements " : ", ").append("Service").append(i).append("<Class0>");
+        }
+        source.append(" {\n")
+                .append("    private String name;\n")
+                .append("    private boolean active;\n")
+                .append("    private List<").append(sibling).append("> peers").append(c).append(" = new ArrayList<>();\n")
+                .append("    private Map<String, Set<").append(sibling).append(">> index = new HashMap<>();\n")
+                .append("    private ").append(sibling).append("[] history").append(c).append(";\n")
+                .append("    private Optional<").append(sibling).append("> parent").append(c).append(" = Optional.empty();\n");
+        if (p > 0) source.append("    /** The corresponding class in the previous package. */\n")
+                .append("    protected ").append(packageName(p - 1)).append('.').append(name).append(" previous;\n");
+        source.append('\n');
+        // Property names are unique per class, so subclasses do not override them with other types.
+        property(source, "String", "name");
+        property(source, "List<" + sibling + ">", "peers" + c);
+        property(source, sibling + "[]", "history" + c);
+        property(source, "Optional<" + sibling + ">", "parent" + c);
+        source.append("    /** @return whether it is active */\n")
+                .append("    public boolean isActive() { return active; }\n\n")
+                .append("    /**\n     * @param key the key\n     * @return the indexed values\n     */\n")
+                .append("    public Collection<").append(sibling).append("> lookup").append(c).append("(String key) {\n")
+                .append("        return index.getOrDefault(key, Collections.emptySet());\n")
+                .append("    }\n");
+        if (c % inheritanceDepth == 0) {
+            source.append("\n    /** @return the computed value */\n")
+                    .append("    protected abstract Number compute();\n");
+        } else if (c % inheritanceDepth == 1) {
+            source.append("\n    @Override\n")
+                    .append("    protected Number compute() { return ").append(c).append("; }\n");
+        }
+        for (int i = 0; i < interfaceFanOut; i++) {
+            source.append("\n    @Override\n")
+                    .append("    public List<Class0> service").append(i)
+                    .append("(Map<String, ? extends Class0> input) {\n")
+                    .append("        return new ArrayList<>(input.values());\n")
+                    .append("    }\n");
+        }
+        return source.append("}\n").toString();
+    }
+
+    private static void property(StringBuilder source, String type, String name) {
+        final String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        source.append("    /** @return the ").append(name).append(" */\n")
+                .append("    public ").append(type).append(" get").append(capitalized).append("() { return ")
+                .append(name).append("; }\n\n")
+                .append("    /** @param ").append(name).append(" the new ").append(name).append(" */\n")
+                .append("    public void set").append(capitalized).append('(').append(type).append(' ').append(name)
+                .append(") { this.").append(name).append(" = ").append(name).append("; }\n\n");
+    }
+
+    private static int requirePositive(int value, String description) {
+        if (value < 1) throw new IllegalArgumentException("Number of " + description + " must be positive: " + value);
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{packages=" + packages + ", classesPerPackage=" + classesPerPackage
+                + ", inheritanceDepth=" + inheritanceDepth + ", interfaceFanOut=" + interfaceFanOut + '}';
+    }
+
+}
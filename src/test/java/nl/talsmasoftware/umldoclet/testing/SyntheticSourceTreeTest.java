@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.testing;
+
+import nl.talsmasoftware.umldoclet.UMLDoclet;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.spi.ToolProvider;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author Sjoerd Talsma
+ */
+public class SyntheticSourceTreeTest {
+
+    @Test
+    public void testGeneratedSources() {
+        SyntheticSourceTree tree = new SyntheticSourceTree().packages(2).classesPerPackage(5).interfaceFanOut(3);
+        List<Path> sources = tree.writeTo(Paths.get("target/synthetic-sources/small"));
+        assertThat(tree.classCount(), is(10));
+        assertThat(sources, hasSize(2 * (5 + 3)));
+    }
+
+    @Test
+    public void testDocletOnGeneratedSources() throws IOException {
+        List<String> args = new ArrayList<>();
+        args.add("-d");
+        args.add("target/synthetic-doclet");
+        args.add("-doclet");
+        args.add(UMLDoclet.class.getName());
+        new SyntheticSourceTree().packages(2).classesPerPackage(4)
+                .writeTo(Paths.get("target/synthetic-sources/doclet"))
+                .forEach(source -> args.add(source.toString()));
+
+        ToolProvider javadoc = ToolProvider.findFirst("javadoc").get();
+        assertThat(javadoc.run(System.out, System.err, args.toArray(new String[0])), is(0));
+
+        String packageUml = new String(Files.readAllBytes(
+                Paths.get("target/synthetic-doclet/synthetic/package1/package.puml")), UTF_8);
+        assertThat("Optional cardinality", packageUml, containsString("\"0..1\""));
+        assertThat("Collection cardinality", packageUml, containsString("\"*\""));
+        assertThat("Getter replaced by reference", packageUml, containsString("peers0"));
+        assertThat("Foreign package reference", packageUml, containsString("synthetic.package0.Class0"));
+    }
+
+}
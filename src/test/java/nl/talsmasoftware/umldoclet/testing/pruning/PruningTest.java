@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.testing.pruning;
+
+import nl.talsmasoftware.umldoclet.UMLDoclet;
+import nl.talsmasoftware.umldoclet.testing.Testing;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.spi.ToolProvider;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Tests pruning of frequently referenced types from the package diagram.
+ * <p>
+ * {@code Runnable} is implemented by three classes and {@code RandomAccess} by two.
+ */
+public class PruningTest {
+
+    private static final String PACKAGE = PruningTest.class.getPackageName();
+
+    @Test
+    public void testTypeReferencedMoreThanThresholdIsPrunedWithItsReferences() throws IOException {
+        String uml = packageUml("default");
+        assertThat(uml, not(containsString("Runnable")));
+        assertThat(uml, containsString("interface RandomAccess"));
+        assertThat(uml, containsString("java.util.RandomAccess <|.. " + PACKAGE + ".First"));
+        assertThat(uml, containsString("java.util.RandomAccess <|.. " + PACKAGE + ".Second"));
+    }
+
+    @Test
+    public void testTypeReferencedUpToThresholdIsKept() throws IOException {
+        String uml = packageUml("threshold", "-umlPruneThreshold", "3");
+        assertThat(uml, containsString("interface Runnable"));
+        assertThat(uml, containsString("java.lang.Runnable <|.. " + PACKAGE + ".Third"));
+        assertThat(uml, containsString("java.util.RandomAccess <|.. " + PACKAGE + ".First"));
+    }
+
+    @Test
+    public void testOnlyTypesFromPrunedPackagesArePruned() throws IOException {
+        String uml = packageUml("packages", "-umlPrunedPackages", "java.util", "-umlPruneThreshold", "1");
+        assertThat(uml, not(containsString("RandomAccess")));
+        assertThat(uml, containsString("interface Runnable"));
+        assertThat(uml, containsString("java.lang.Runnable <|.. " + PACKAGE + ".First"));
+    }
+
+    private static String packageUml(String name, String... options) throws IOException {
+        File destination = new File("target/pruning-" + name);
+        List<String> args = new ArrayList<>(asList("-sourcepath", "src/test/java", "-d", destination.getPath(),
+                "-doclet", UMLDoclet.class.getName(), "-quiet", "-umlImageFormats", "none"));
+        args.addAll(asList(options));
+        args.add(PACKAGE);
+        assertThat(ToolProvider.findFirst("javadoc").get().run(System.out, System.err, args.toArray(new String[0])), is(0));
+        return Testing.readUml(new FileInputStream(new File(destination, PACKAGE.replace('.', '/') + "/package.puml")));
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.uml;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Sjoerd Talsma
+ */
+public class NamespaceTest {
+
+    @Test
+    public void testContains() {
+        Namespace namespace = new Namespace(null, "nl.talsmasoftware");
+        assertThat(namespace.contains("nl.talsmasoftware.Type"), is(true));
+        assertThat(namespace.contains("nl.talsmasoftware.umldoclet.Type"), is(true));
+        assertThat(namespace.contains(new TypeName("Type", "nl.talsmasoftware.Type")), is(true));
+    }
+
+    @Test
+    public void testDoesNotContain() {
+        Namespace namespace = new Namespace(null, "nl.talsmasoftware");
+        assertThat(namespace.contains("nl.talsmasoftware"), is(false));
+        assertThat(namespace.contains("nl.talsmasoftwareX.Type"), is(false));
+        assertThat(namespace.contains("nl.talsma.Type"), is(false));
+        assertThat(namespace.contains((String) null), is(false));
+        assertThat(namespace.contains((TypeName) null), is(false));
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.uml;
+
+import org.junit.Test;
+
+import static nl.talsmasoftware.umldoclet.uml.Reference.Side.from;
+import static nl.talsmasoftware.umldoclet.uml.Reference.Side.to;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author Sjoerd Talsma
+ */
+public class ReferencesTest {
+
+    @Test
+    public void testInsertionOrder() {
+        References references = new References();
+        references.add(new Reference(from("type2"), "-->", to("type3")));
+        references.add(new Reference(from("type1"), "-->", to("type2")));
+        references.add(new Reference(from("type3"), "--|>", to("type1")));
+        assertThat(references.stream().map(ref -> ref.from.qualifiedName).toArray(),
+                is(arrayContaining("type2", "type1", "type3")));
+    }
+
+    @Test
+    public void testMergeNotesOfEqualReferences() {
+        References references = new References();
+        assertThat(references.add(new Reference(from("type1"), "-->", to("type2", "*"), "first")), is(true));
+        assertThat(references.add(new Reference(from("type3"), "-->", to("type1"))), is(true));
+        assertThat(references.add(new Reference(from("type2", "*"), "<--", to("type1"), "second")), is(true));
+        assertThat(references.add(new Reference(from("type1"), "-->", to("type2", "*"), "first")), is(false));
+
+        assertThat(references, hasSize(2));
+        Reference merged = references.iterator().next();
+        assertThat(merged.notes, contains("first", "second"));
+        assertThat(merged.from.qualifiedName, is("type1"));
+    }
+
+    @Test
+    public void testContainsAndRemoveCanonicalReference() {
+        References references = new References();
+        references.add(new Reference(from("type1"), "-->", to("type2")));
+        assertThat(references.contains(new Reference(from("type2"), "<--", to("type1"))), is(true));
+        assertThat(references.remove(new Reference(from("type2"), "<--", to("type1"))), is(true));
+        assertThat(references, is(empty()));
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016-2018 Talsma ICT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.talsmasoftware.umldoclet.uml;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author Sjoerd Talsma
+ */
+public class TypeNameTest {
+
+    @Test
+    public void testEqualsComparesQualifiedName() {
+        TypeName name = new TypeName("String", "java.lang.String");
+        assertThat(name, is(equalTo(new TypeName("String", new String("java.lang.String")))));
+        assertThat(name, is(not(equalTo(new TypeName("string", "java.lang.string")))));
+        assertThat(name.hashCode(), is(new TypeName("String", "java.lang.String").hashCode()));
+    }
+
+    @Test
+    public void testCompareToIgnoresCaseFirst() {
+        TypeName upper = new TypeName("B", "a.B");
+        TypeName lower = new TypeName("b", "a.b");
+        TypeName next = new TypeName("C", "a.C");
+        assertThat(upper.compareTo(lower), is(lessThan(0)));
+        assertThat(lower.compareTo(next), is(lessThan(0)));
+        assertThat(upper.compareTo(new TypeName("B", "a.B")), is(0));
+    }
+
+    @Test
+    public void testVariableDiffersFromPlainTypeName() {
+        TypeName number = new TypeName("Number", "java.lang.Number");
+        assertThat(TypeName.Variable.extendsBound("T", number).equals(number), is(false));
+        assertThat(TypeName.Variable.extendsBound("T", number).equals(TypeName.Variable.superBound("T", number)), is(false));
+    }
+
+}